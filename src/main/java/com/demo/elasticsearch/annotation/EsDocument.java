@@ -0,0 +1,54 @@
+package com.demo.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 声明一个model对应的索引和类型, 字段的mapping由 {@link EsField} 声明
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface EsDocument {
+
+    /**
+     * 索引名称
+     */
+    String index();
+
+    /**
+     * 类型名称
+     */
+    String type();
+
+    /**
+     * 主分片数
+     */
+    int shards() default 5;
+
+    /**
+     * 副本数
+     */
+    int replicas() default 1;
+
+    /**
+     * 未声明字段的处理方式: true 动态映射, false 只存在_source里不建索引, strict 拒绝写入
+     */
+    String dynamic() default "false";
+
+    /**
+     * 是否开启_all字段
+     */
+    boolean allEnabled() default false;
+
+    /**
+     * 路由字段(es里的字段名, 必须是keyword类型), 写入时用这个字段的值作为routing, 值相同的document在同一个分片上,
+     * 按这个字段精确查询时只查一个分片. 声明之后 _routing 为必填, 没有routing的写入/读取会直接报错
+     */
+    String routing() default "";
+}
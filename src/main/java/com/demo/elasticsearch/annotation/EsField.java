@@ -0,0 +1,63 @@
+package com.demo.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 声明字段的mapping, 字段名优先使用 @JsonProperty 的值
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface EsField {
+
+    /**
+     * 字段类型
+     */
+    EsFieldType type();
+
+    /**
+     * 是否建倒排索引, 只用来展示的字段设为false
+     */
+    boolean index() default true;
+
+    /**
+     * 是否有正排索引(doc_values), 排序聚合需要, text类型不支持
+     */
+    boolean docValues() default true;
+
+    /**
+     * 是否单独存储
+     */
+    boolean store() default false;
+
+    /**
+     * 分词器, 只对text/completion类型有效
+     */
+    String analyzer() default "";
+
+    /**
+     * 搜索时的分词器, 为空则和analyzer相同, 只对text/completion类型有效
+     */
+    String searchAnalyzer() default "";
+
+    /**
+     * text类型额外生成的keyword子字段名, 为空则不生成
+     */
+    String keywordSubField() default "";
+
+    /**
+     * text类型额外生成的前缀搜索子字段名(edge_ngram分词, 分析器在索引settings里定义), 为空则不生成
+     */
+    String autocompleteSubField() default "";
+
+    /**
+     * 日期格式, 只对date类型有效
+     */
+    String format() default "";
+}
@@ -0,0 +1,30 @@
+package com.demo.elasticsearch.annotation;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description es字段类型
+ */
+public enum EsFieldType {
+
+    TEXT("text"),
+    KEYWORD("keyword"),
+    LONG("long"),
+    INTEGER("integer"),
+    DOUBLE("double"),
+    BOOLEAN("boolean"),
+    DATE("date"),
+    GEO_POINT("geo_point"),
+    COMPLETION("completion"),
+    OBJECT("object");
+
+    private final String name;
+
+    EsFieldType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,35 @@
+package com.demo.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author agent
+ * @date Create in 12:15 2026/10/19
+ * @Description 声明一个外键字段(值是同一个索引下另一个type的document id), 由 EnrichmentService 关联:
+ * 读取时按一页结果批量取引用的document, 或者导入时把引用document的字段直接写进来
+ * 被引用的type不能声明路由字段, 只凭id就能取到
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface EsJoin {
+
+    /**
+     * 被引用的类型名称
+     */
+    String type();
+
+    /**
+     * 关联结果放在哪个字段下
+     */
+    String as();
+
+    /**
+     * 取被引用document的哪些字段, 不传取全部
+     */
+    String[] fields() default {};
+}
@@ -0,0 +1,223 @@
+package com.demo.elasticsearch.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author agent
+ * @date Create in 11:34 2026/10/19
+ * @Description 自适应并发限制(AIMD):
+ * 1. 在途请求达到限制的一半以上且延迟没有明显上涨时, 每个请求成功把限制加 1/limit, 相当于每一轮加1
+ * 2. 集群拒绝(429)/超时, 或者近期延迟超过基线的 latencyTolerance 倍时, 限制乘以 backoffRatio,
+ * 上次缩小之前就已经发出的请求不再触发缩小, 避免同一波拒绝把限制连续缩小多次
+ * 延迟比较的是两条指数移动平均(和gradient类限流器相同): 近期延迟取最近约10个样本, 基线取最近约500个样本,
+ * 便宜和昂贵的查询共用一个限制时, 比较的是整体的平均水平, 单个慢查询不会被当成拥塞;
+ * 集群整体变慢后基线慢慢跟上, 负载下降后基线快速回落
+ */
+@Slf4j
+public class AdaptiveLimiter {
+
+    /**
+     * 近期延迟的平滑窗口(样本数)
+     */
+    private static final int SHORT_WINDOW = 10;
+
+    /**
+     * 延迟基线的平滑窗口(样本数)
+     */
+    private static final int LONG_WINDOW = 500;
+
+    /**
+     * 样本数达到之前不判断延迟, 两条平均线还不稳定
+     */
+    private static final int WARMUP_SAMPLES = SHORT_WINDOW * 2;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double latencyTolerance;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double shortRttNanos;
+
+    private double longRttNanos;
+
+    private long samples;
+
+    private long lastDecreaseNanos = System.nanoTime();
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit){
+            throw new IllegalArgumentException("invalid limits [" + minLimit + ", " + maxLimit + "] for limiter [" + name + "]");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @param name 名称
+     * @param limit 固定的并发数
+     * @return 不会调整的限制
+     */
+    public static AdaptiveLimiter fixed(String name, int limit){
+        return new AdaptiveLimiter(name, limit, limit, limit, 1, Double.MAX_VALUE);
+    }
+
+    /**
+     * 在限制内执行一次调用
+     * @param call 调用
+     * @param acquireTimeoutMillis 等待名额的最长时间
+     * @param <T> 返回值类型
+     * @return 调用结果
+     */
+    public <T> T execute(Supplier<T> call, long acquireTimeoutMillis){
+        acquire(acquireTimeoutMillis);
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e){
+            if (isOverload(e)){
+                onDropped(start);
+            } else {
+                onIgnored();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 获取一个名额, 之后必须调用 onSuccess/onDropped/onIgnored 中的一个
+     * @param timeoutMillis 等待的最长时间
+     */
+    public synchronized void acquire(long timeoutMillis){
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight >= (int) limit){
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0){
+                throw new LimitExceededException("concurrency limit of [" + name + "] reached: " + (int) limit);
+            }
+            await(remaining);
+        }
+        inFlight++;
+    }
+
+    /**
+     * 获取一个名额, 一直等到有名额为止(用于需要背压的批量写入)
+     */
+    public synchronized void acquire(){
+        while (inFlight >= (int) limit){
+            await(0);
+        }
+        inFlight++;
+    }
+
+    /**
+     * 请求成功
+     * @param rttNanos 耗时
+     */
+    public synchronized void onSuccess(long rttNanos){
+        boolean utilized = inFlight >= limit / 2;
+        release();
+        sample(rttNanos);
+
+        if (samples >= WARMUP_SAMPLES && shortRttNanos > longRttNanos * latencyTolerance){
+            decrease(System.nanoTime() - rttNanos, "latency " + TimeUnit.NANOSECONDS.toMillis((long) shortRttNanos)
+                    + "ms, baseline " + TimeUnit.NANOSECONDS.toMillis((long) longRttNanos) + "ms");
+        } else if (utilized && limit < maxLimit){
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * 请求被集群拒绝或超时
+     * @param startNanos 请求发出的时间(System.nanoTime)
+     */
+    public synchronized void onDropped(long startNanos){
+        release();
+        decrease(startNanos, "rejected");
+    }
+
+    /**
+     * 请求失败但和集群负载无关(参数错误等), 只释放名额
+     */
+    public synchronized void onIgnored(){
+        release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return 集群过载的信号: 拒绝(429)或超时
+     */
+    public static boolean isOverload(Throwable e){
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        return cause instanceof EsRejectedExecutionException
+                || cause instanceof ElasticsearchTimeoutException
+                || ExceptionsHelper.status(cause) == RestStatus.TOO_MANY_REQUESTS;
+    }
+
+    private void await(long millis){
+        try {
+            wait(millis);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for limiter [" + name + "]", e);
+        }
+    }
+
+    private void release(){
+        inFlight--;
+        notifyAll();
+    }
+
+    private void sample(long rttNanos){
+        if (samples++ == 0){
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        // 样本数不到窗口大小时按算术平均, 基线不会偏向最开始的几个样本
+        shortRttNanos += (rttNanos - shortRttNanos) * Math.max(2.0 / (SHORT_WINDOW + 1), 1.0 / samples);
+        longRttNanos += (rttNanos - longRttNanos) * Math.max(2.0 / (LONG_WINDOW + 1), 1.0 / samples);
+        // 负载下降后近期延迟远低于基线, 基线加速回落, 否则要很久才能重新发现拥塞
+        if (longRttNanos > shortRttNanos * 2){
+            longRttNanos *= 0.95;
+        }
+    }
+
+    private void decrease(long startNanos, String reason){
+        if (startNanos - lastDecreaseNanos < 0 || limit <= minLimit){
+            return;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        log.debug("并发限制[{}] {} -> {}, 原因:{}", name, (int) previous, (int) limit, reason);
+    }
+}
@@ -0,0 +1,96 @@
+package com.demo.elasticsearch.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author agent
+ * @date Create in 11:30 2026/10/19
+ * @Description 熔断器:
+ * CLOSED 正常请求, 连续失败达到阈值后 -> OPEN
+ * OPEN 直接拒绝, 经过冷却时间后 -> HALF_OPEN
+ * HALF_OPEN 只放一个探测请求, 成功 -> CLOSED, 失败 -> OPEN
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean probing;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true 可以发送请求
+     */
+    public synchronized boolean allowRequest(){
+        switch (state){
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis){
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probing = true;
+                return true;
+            default:
+                // HALF_OPEN 同时只放一个探测请求
+                if (probing){
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess(){
+        consecutiveFailures = 0;
+        probing = false;
+        if (state != State.CLOSED){
+            transition(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure(){
+        consecutiveFailures++;
+        probing = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)){
+            openedAt = System.currentTimeMillis();
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * 请求没有发出去或者没有结果(本地限流/本地异常/等待被中断), 不算成功也不算失败, 释放探测名额
+     */
+    public synchronized void onIgnored(){
+        probing = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transition(State next){
+        log.warn("熔断器[{}]状态 {} -> {}, 连续失败[{}]次", name, state, next, consecutiveFailures);
+        state = next;
+    }
+}
@@ -0,0 +1,122 @@
+package com.demo.elasticsearch.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * @author agent
+ * @date Create in 11:39 2026/10/19
+ * @Description 异步执行阻塞的es调用, elasticsearch.execution.mode:
+ * 1. platform: 固定大小的平台线程池, 同时阻塞的调用数等于线程数
+ * 2. virtual: JDK 21+ 每个调用一个虚拟线程, 阻塞时不占用系统线程;
+ *    更低版本的运行时没有虚拟线程, 退回到小栈(256k)的有界线程池
+ * 编译目标仍是1.8, 虚拟线程通过反射创建
+ */
+@Component
+@Slf4j
+public class ClientExecutor {
+
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    /**
+     * 退回模式下线程的栈大小
+     */
+    private static final long LIGHTWEIGHT_STACK_SIZE = 256 * 1024;
+
+    @Value("${elasticsearch.execution.mode:platform}")
+    private String mode;
+
+    /**
+     * platform模式(以及virtual的退回模式)的线程数
+     */
+    @Value("${elasticsearch.execution.platform-threads:64}")
+    private int platformThreads;
+
+    private ExecutorService executor;
+
+    private Mode effectiveMode;
+
+    @PostConstruct
+    public void init(){
+        Mode requested = Mode.valueOf(mode.trim().toUpperCase());
+        ExecutorService virtual = requested == Mode.VIRTUAL ? virtualThreadExecutor() : null;
+
+        if (virtual != null){
+            executor = virtual;
+            effectiveMode = Mode.VIRTUAL;
+            log.info("es调用使用虚拟线程执行");
+        } else {
+            long stackSize = requested == Mode.VIRTUAL ? LIGHTWEIGHT_STACK_SIZE : 0;
+            executor = platformExecutor("es-call", platformThreads, stackSize);
+            effectiveMode = Mode.PLATFORM;
+            if (requested == Mode.VIRTUAL){
+                log.warn("运行时[{}]不支持虚拟线程, 退回到[{}]个小栈平台线程", System.getProperty("java.version"), platformThreads);
+            } else {
+                log.info("es调用使用[{}]个平台线程执行", platformThreads);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy(){
+        executor.shutdown();
+    }
+
+    /**
+     * 在执行器上运行一次阻塞调用
+     * @param call 调用
+     * @param <T> 返回值类型
+     * @return 结果
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call){
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+
+    /**
+     * @return 实际使用的模式
+     */
+    public Mode getEffectiveMode() {
+        return effectiveMode;
+    }
+
+    /**
+     * @return JDK 21+ 返回每个任务一个虚拟线程的执行器, 否则返回null
+     */
+    public static ExecutorService virtualThreadExecutor(){
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e){
+            return null;
+        }
+    }
+
+    /**
+     * @param name 线程名前缀
+     * @param threads 线程数
+     * @param stackSize 线程栈大小, 0使用jvm默认值
+     * @return 有界的平台线程池
+     */
+    public static ExecutorService platformExecutor(String name, int threads, long stackSize){
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(null, r, name + "-" + counter.incrementAndGet(), stackSize);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
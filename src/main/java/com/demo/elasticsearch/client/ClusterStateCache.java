@@ -0,0 +1,105 @@
+package com.demo.elasticsearch.client;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author agent
+ * @date Create in 11:41 2026/10/19
+ * @Description 短时间缓存的集群元数据(索引名和别名), 用来回答"索引是否存在", 避免每次管理操作前都多一次网络请求
+ * 过期后在下一次访问时刷新; 本应用创建/删除索引或切换别名后调用 invalidate 立即失效
+ * 刷新只取索引名和别名(get index 的 aliases), 不拉取包含所有mapping的完整集群元数据
+ */
+@Component
+@Slf4j
+public class ClusterStateCache {
+
+    @Autowired
+    private TransportClient client;
+
+    @Value("${elasticsearch.cache.cluster-state-ttl-millis:5000}")
+    private long ttlMillis;
+
+    private volatile Set<String> names = Collections.emptySet();
+
+    private volatile long expiresAt;
+
+    /**
+     * 每次 invalidate 加1, 刷新开始之后有过 invalidate 的结果不缓存, 防止旧数据覆盖失效
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param indexName 索引名称或别名, 支持逗号分隔和通配符
+     * @param timeout 需要刷新时拉取集群元数据的超时时间
+     * @return 全部存在返回true
+     */
+    public boolean exists(String indexName, TimeValue timeout){
+        Set<String> current = names(timeout);
+        for (String name : indexName.split(",")) {
+            if (Regex.isSimpleMatchPattern(name) ? current.stream().noneMatch(n -> Regex.simpleMatch(name, n)) : !current.contains(name)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 立即失效, 下一次访问时重新拉取
+     */
+    public void invalidate(){
+        generation.incrementAndGet();
+        expiresAt = 0;
+    }
+
+    private Set<String> names(TimeValue timeout){
+        if (System.currentTimeMillis() < expiresAt){
+            return names;
+        }
+
+        synchronized (this){
+            if (System.currentTimeMillis() < expiresAt){
+                return names;
+            }
+
+            long startGeneration = generation.get();
+            GetIndexResponse response = client.admin().indices()
+                    .prepareGetIndex()
+                    .setFeatures(GetIndexRequest.Feature.ALIASES)
+                    // 和 indices exists 一样包括关闭的索引, 集群里没有索引时返回空
+                    .setIndicesOptions(IndicesOptions.fromOptions(true, true, true, true))
+                    .get(timeout);
+
+            Set<String> fetched = new HashSet<>(Arrays.asList(response.getIndices()));
+            for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : response.getAliases()) {
+                for (AliasMetaData alias : cursor.value) {
+                    fetched.add(alias.alias());
+                }
+            }
+
+            if (generation.get() == startGeneration){
+                names = fetched;
+                expiresAt = System.currentTimeMillis() + ttlMillis;
+            }
+            log.debug("刷新集群元数据缓存, 索引和别名共[{}]个", fetched.size());
+            return fetched;
+        }
+    }
+}
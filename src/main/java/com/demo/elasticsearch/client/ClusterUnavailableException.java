@@ -0,0 +1,13 @@
+package com.demo.elasticsearch.client;
+
+/**
+ * @author agent
+ * @date Create in 11:30 2026/10/19
+ * @Description 熔断器打开时直接抛出, 不再请求集群
+ */
+public class ClusterUnavailableException extends RuntimeException {
+
+    public ClusterUnavailableException(String message) {
+        super(message);
+    }
+}
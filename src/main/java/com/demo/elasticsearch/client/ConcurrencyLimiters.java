@@ -0,0 +1,95 @@
+package com.demo.elasticsearch.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * @author agent
+ * @date Create in 11:34 2026/10/19
+ * @Description search和bulk两条链路共享的并发限制, 限制值根据集群的拒绝和延迟自动调整
+ * 关闭自适应时按max固定
+ */
+@Component
+@Slf4j
+public class ConcurrencyLimiters {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${elasticsearch.limiter.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${elasticsearch.limiter.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    /**
+     * 延迟超过基线多少倍认为集群开始排队
+     */
+    @Value("${elasticsearch.limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    /**
+     * 等待名额的最长时间(毫秒)
+     */
+    @Value("${elasticsearch.limiter.acquire-timeout-millis:1000}")
+    private long acquireTimeoutMillis;
+
+    @Value("${elasticsearch.limiter.search.initial:10}")
+    private int searchInitial;
+
+    @Value("${elasticsearch.limiter.search.min:2}")
+    private int searchMin;
+
+    @Value("${elasticsearch.limiter.search.max:200}")
+    private int searchMax;
+
+    @Value("${elasticsearch.limiter.bulk.initial:2}")
+    private int bulkInitial;
+
+    @Value("${elasticsearch.limiter.bulk.min:1}")
+    private int bulkMin;
+
+    @Value("${elasticsearch.limiter.bulk.max:32}")
+    private int bulkMax;
+
+    private AdaptiveLimiter search;
+
+    private AdaptiveLimiter bulk;
+
+    @PostConstruct
+    public void init(){
+        search = create("search", searchInitial, searchMin, searchMax);
+        bulk = create("bulk", bulkInitial, bulkMin, bulkMax);
+    }
+
+    public AdaptiveLimiter search() {
+        return search;
+    }
+
+    public AdaptiveLimiter bulk() {
+        return bulk;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    private AdaptiveLimiter create(String name, int initial, int min, int max){
+        AdaptiveLimiter limiter = adaptive
+                ? new AdaptiveLimiter(name, initial, min, max, backoffRatio, latencyTolerance)
+                : AdaptiveLimiter.fixed(name, max);
+        log.info("并发限制[{}] 初始[{}] 范围[{}, {}] 自适应[{}]", name, limiter.getLimit(), min, max, adaptive);
+
+        if (meterRegistry != null){
+            Gauge.builder("elasticsearch.limiter.limit", limiter, AdaptiveLimiter::getLimit).tag("path", name).register(meterRegistry);
+            Gauge.builder("elasticsearch.limiter.in.flight", limiter, AdaptiveLimiter::getInFlight).tag("path", name).register(meterRegistry);
+        }
+        return limiter;
+    }
+}
@@ -0,0 +1,216 @@
+package com.demo.elasticsearch.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.transport.client.PreBuiltTransportClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 12:11 2026/10/19
+ * @Description 联邦查询的集群列表, 每个区域一个独立的es集群, 每个集群一个 TransportClient
+ * elasticsearch.federation.clusters 列出集群名, 每个集群的配置在 elasticsearch.federation.cluster.{name} 下:
+ * cluster-name 集群名称, nodes 节点地址(host:port, 逗号分隔), timeout 超时时间
+ * include-local 为 true 时把本应用的主client也加入, 名字是 local-name
+ */
+@Component
+@Slf4j
+public class FederatedClusters {
+
+    private static final String PREFIX = "elasticsearch.federation.cluster.";
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private TransportClient localClient;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 集群名, 逗号分隔, 为空只有本地集群
+     */
+    @Value("${elasticsearch.federation.clusters:}")
+    private String clusterNames;
+
+    @Value("${elasticsearch.federation.include-local:true}")
+    private boolean includeLocal;
+
+    @Value("${elasticsearch.federation.local-name:local}")
+    private String localName;
+
+    /**
+     * 没有单独配置时每个集群的超时时间, 超时的集群不等待, 结果里记为失败
+     */
+    @Value("${elasticsearch.federation.timeout:5s}")
+    private String defaultTimeout;
+
+    @Value("${elasticsearch.transport.compress:false}")
+    private boolean compress;
+
+    @Value("${elasticsearch.resilience.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${elasticsearch.resilience.breaker.open-millis:30000}")
+    private long openMillis;
+
+    /**
+     * 写时复制: 查询时不加锁读取, 加入集群时替换整个map
+     */
+    private volatile Map<String, Cluster> clusters = Collections.emptyMap();
+
+    /**
+     * 一个参与联邦查询的集群
+     */
+    @Getter
+    public static class Cluster {
+
+        private final String name;
+
+        private final TransportClient client;
+
+        private final TimeValue timeout;
+
+        /**
+         * 每个集群单独熔断, 一个区域不可用时直接跳过, 不占用其他区域的等待时间
+         */
+        private final CircuitBreaker breaker;
+
+        /**
+         * 由这里创建的client, 关闭时一起关闭
+         */
+        private final boolean owned;
+
+        Cluster(String name, TransportClient client, TimeValue timeout, CircuitBreaker breaker, boolean owned) {
+            this.name = name;
+            this.client = client;
+            this.timeout = timeout;
+            this.breaker = breaker;
+            this.owned = owned;
+        }
+    }
+
+    @PostConstruct
+    public void init(){
+        TimeValue timeout = TimeValue.parseTimeValue(defaultTimeout, "elasticsearch.federation.timeout");
+        if (includeLocal){
+            add(localName, localClient, timeout, false);
+        }
+        for (String name : StringUtils.split(clusterNames, ',')) {
+            name = name.trim();
+            add(name, connect(name), clusterTimeout(name, timeout), true);
+        }
+        log.info("联邦查询集群:{}", clusters.keySet());
+    }
+
+    @PreDestroy
+    public void destroy(){
+        for (Cluster cluster : clusters.values()) {
+            if (cluster.isOwned()){
+                cluster.getClient().close();
+            }
+        }
+    }
+
+    /**
+     * 加入一个集群, 同名的会被替换; 传入的client由调用方关闭
+     * @param name 集群名
+     * @param client client
+     * @param timeout 超时时间
+     */
+    public void register(String name, TransportClient client, TimeValue timeout){
+        add(name, client, timeout, false);
+    }
+
+    /**
+     * @param name 集群名
+     * @return 集群, 没有配置返回null
+     */
+    public Cluster get(String name){
+        return clusters.get(name);
+    }
+
+    /**
+     * @return 所有集群名, 按配置顺序
+     */
+    public List<String> names(){
+        return new ArrayList<>(clusters.keySet());
+    }
+
+    /**
+     * @return 所有集群
+     */
+    public Collection<Cluster> all(){
+        return clusters.values();
+    }
+
+    private synchronized void add(String name, TransportClient client, TimeValue timeout, boolean owned){
+        Cluster cluster = new Cluster(name, client, timeout, new CircuitBreaker("federation-" + name, failureThreshold, openMillis), owned);
+        Map<String, Cluster> updated = new LinkedHashMap<>(clusters);
+        Cluster previous = updated.put(name, cluster);
+        clusters = Collections.unmodifiableMap(updated);
+        if (previous != null && previous.isOwned()){
+            previous.getClient().close();
+        }
+        if (previous == null && meterRegistry != null){
+            Gauge.builder("elasticsearch.federation.breaker.state", this, f -> f.get(name).getBreaker().getState().ordinal())
+                    .tag("cluster", name)
+                    .description("0 closed, 1 half-open, 2 open")
+                    .register(meterRegistry);
+        }
+    }
+
+    private TimeValue clusterTimeout(String name, TimeValue defaultValue){
+        String timeout = environment.getProperty(PREFIX + name + ".timeout");
+        return timeout == null ? defaultValue : TimeValue.parseTimeValue(timeout, PREFIX + name + ".timeout");
+    }
+
+    /**
+     * 初始化失败直接抛出异常让应用启动失败, 和主client一致
+     */
+    private TransportClient connect(String name){
+        String nodes = environment.getProperty(PREFIX + name + ".nodes");
+        if (StringUtils.isBlank(nodes)){
+            throw new IllegalStateException("联邦查询集群[" + name + "]没有配置 " + PREFIX + name + ".nodes");
+        }
+        Settings settings = Settings.builder()
+                .put("cluster.name", environment.getProperty(PREFIX + name + ".cluster-name", "elasticsearch"))
+                .put("client.transport.sniff", environment.getProperty(PREFIX + name + ".sniff", Boolean.class, true))
+                .put("transport.tcp.compress", compress)
+                .build();
+
+        TransportClient client = new PreBuiltTransportClient(settings);
+        try {
+            for (String node : StringUtils.split(nodes, ',')) {
+                String[] hostPort = node.trim().split(":");
+                int port = hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 9300;
+                client.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostPort[0]), port));
+            }
+        } catch (Exception e){
+            client.close();
+            throw new IllegalStateException("联邦查询集群[" + name + "] client init error", e);
+        }
+        return client;
+    }
+}
@@ -0,0 +1,13 @@
+package com.demo.elasticsearch.client;
+
+/**
+ * @author agent
+ * @date Create in 11:34 2026/10/19
+ * @Description 本地并发限制已满, 在等待时间内没有拿到名额, 请求没有发往集群
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package com.demo.elasticsearch.client;
+
+/**
+ * @author agent
+ * @date Create in 11:30 2026/10/19
+ * @Description es操作类型, 决定超时时间和是否可以安全重试
+ */
+public enum Operation {
+
+    SEARCH("search", true),
+    GET("get", true),
+    INDEX("index", false),
+    /**
+     * 客户端生成id的create, 重试时已经写入的会版本冲突, 可以安全重试
+     */
+    CREATE("create", true),
+    UPDATE("update", false),
+    DELETE("delete", true),
+    BULK("bulk", false),
+    ADMIN_READ("admin-read", true),
+    ADMIN_WRITE("admin-write", false);
+
+    /**
+     * 配置里使用的名称, elasticsearch.resilience.timeout.{key}
+     */
+    private final String key;
+
+    /**
+     * 幂等的操作在超时/节点不可用时可以重试, 非幂等的只在请求被拒绝(没有执行)时重试
+     */
+    private final boolean idempotent;
+
+    Operation(String key, boolean idempotent) {
+        this.key = key;
+        this.idempotent = idempotent;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,128 @@
+package com.demo.elasticsearch.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author agent
+ * @date Create in 11:36 2026/10/19
+ * @Description 请求/响应体积控制:
+ * 1. search发送前按 size × 单条_source平均大小 估算响应体积, 超过上限时打印警告或直接拒绝
+ * 2. 单条_source平均大小按索引从历史响应里学习(EWMA), 没有样本时用配置的估计值
+ * 3. bulk按字节数拆批的上限, 由 BulkWriter 使用
+ */
+@Component
+@Slf4j
+public class PayloadGuard {
+
+    private static final double EWMA_ALPHA = 0.2;
+
+    /**
+     * 没有设置size时es默认返回10条
+     */
+    private static final int DEFAULT_SIZE = 10;
+
+    @Value("${elasticsearch.payload.max-response-size:10mb}")
+    private String maxResponseSize;
+
+    @Value("${elasticsearch.payload.estimated-hit-size:2kb}")
+    private String estimatedHitSize;
+
+    /**
+     * true 超过上限直接拒绝, false 只打印警告
+     */
+    @Value("${elasticsearch.payload.reject-oversized:false}")
+    private boolean rejectOversized;
+
+    @Value("${elasticsearch.payload.bulk-max-size:5mb}")
+    private String bulkMaxSize;
+
+    private long maxResponseBytes;
+
+    private long estimatedHitBytes;
+
+    private long bulkMaxBytes;
+
+    /**
+     * 索引 -> 单条_source平均字节数
+     */
+    private final ConcurrentMap<String, Double> hitBytes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init(){
+        maxResponseBytes = ByteSizeValue.parseBytesSizeValue(maxResponseSize, "elasticsearch.payload.max-response-size").getBytes();
+        estimatedHitBytes = ByteSizeValue.parseBytesSizeValue(estimatedHitSize, "elasticsearch.payload.estimated-hit-size").getBytes();
+        bulkMaxBytes = ByteSizeValue.parseBytesSizeValue(bulkMaxSize, "elasticsearch.payload.bulk-max-size").getBytes();
+    }
+
+    /**
+     * @return 每个bulk请求的最大字节数
+     */
+    public long getBulkMaxBytes() {
+        return bulkMaxBytes;
+    }
+
+    /**
+     * 发送前检查预计的响应体积
+     * @param request 查询请求
+     */
+    public void check(SearchRequest request){
+        SearchSourceBuilder source = request.source();
+        if (source == null || (source.fetchSource() != null && !source.fetchSource().fetchSource())){
+            // 不返回_source时(doc_values/stored_fields/只要聚合)响应很小, 不检查
+            return;
+        }
+
+        int size = source.size() < 0 ? DEFAULT_SIZE : source.size();
+        long estimated = (long) (size * hitBytes.getOrDefault(key(request), (double) estimatedHitBytes));
+        if (estimated <= maxResponseBytes){
+            return;
+        }
+
+        String message = "estimated response of [" + String.join(",", request.indices()) + "] is " + new ByteSizeValue(estimated)
+                + " (size " + size + "), exceeds " + new ByteSizeValue(maxResponseBytes) + "; use paging, scroll or a field projection";
+        if (rejectOversized){
+            throw new IllegalArgumentException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * 根据响应更新单条_source的平均大小
+     * @param request 查询请求
+     * @param response 响应
+     */
+    public void record(SearchRequest request, SearchResponse response){
+        SearchHit[] hits = response.getHits().getHits();
+        long bytes = 0;
+        int count = 0;
+        for (SearchHit hit : hits) {
+            BytesReference sourceRef = hit.getSourceRef();
+            if (sourceRef != null){
+                bytes += sourceRef.length();
+                count++;
+            }
+        }
+        if (count == 0){
+            return;
+        }
+
+        double average = (double) bytes / count;
+        hitBytes.merge(key(request), average, (previous, sample) -> EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * previous);
+    }
+
+    private static String key(SearchRequest request){
+        return String.join(",", request.indices());
+    }
+}
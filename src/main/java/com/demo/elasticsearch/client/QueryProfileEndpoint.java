@@ -0,0 +1,28 @@
+package com.demo.elasticsearch.client;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 12:04 2026/10/19
+ * @Description 最慢查询结构的报告, GET /actuator/queryprofiles?limit=20
+ */
+@Component
+@Endpoint(id = "queryprofiles")
+public class QueryProfileEndpoint {
+
+    @Autowired
+    private QueryProfiler profiler;
+
+    @ReadOperation
+    public List<Map<String, Object>> report(@Nullable Integer limit){
+        return profiler.report(limit == null ? 20 : limit);
+    }
+}
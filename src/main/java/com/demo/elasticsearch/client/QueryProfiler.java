@@ -0,0 +1,278 @@
+package com.demo.elasticsearch.client;
+
+import com.demo.elasticsearch.model.QueryProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.profile.ProfileResult;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.query.QueryProfileShardResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * @author agent
+ * @date Create in 12:04 2026/10/19
+ * @Description 查询profile: 按比例抽样的查询带上 profile=true; 没有抽中但超过慢查询阈值的, 在后台带上profile再执行一次(每个查询结构限频)
+ * 解析每个分片的rewrite/query/collector耗时, 加上客户端的传输和结果转换时间, 按查询结构聚合最慢的查询
+ */
+@Component
+@Slf4j
+public class QueryProfiler {
+
+    private static final Pattern STRING_VALUE = Pattern.compile(":\\s*\"(?:[^\"\\\\]|\\\\.)*\"");
+
+    private static final Pattern NUMBER_VALUE = Pattern.compile(":\\s*-?\\d+(?:\\.\\d+)?");
+
+    /**
+     * 只有值的数组(terms/ids), 例如 ["1","2"] / [1,2], 元素个数不同也算同一个查询结构
+     */
+    private static final Pattern VALUE_ARRAY = Pattern.compile(
+            "\\[\\s*(?:\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+(?:\\.\\d+)?|true|false|null)(?:\\s*,\\s*(?:\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+(?:\\.\\d+)?|true|false|null))*\\s*]");
+
+    private static final ThreadLocal<QueryProfile> LAST = new ThreadLocal<>();
+
+    @Value("${elasticsearch.profile.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 带上profile=true的查询比例
+     */
+    @Value("${elasticsearch.profile.sample-rate:0.01}")
+    private double sampleRate;
+
+    /**
+     * 慢查询阈值(毫秒, 客户端耗时)
+     */
+    @Value("${elasticsearch.profile.slow-threshold-millis:500}")
+    private long slowThresholdMillis;
+
+    /**
+     * 同一个查询结构两次后台profile的最小间隔(秒)
+     */
+    @Value("${elasticsearch.profile.reprofile-interval-seconds:60}")
+    private long reprofileIntervalSeconds;
+
+    /**
+     * 最多记录多少种查询结构
+     */
+    @Value("${elasticsearch.profile.max-shapes:200}")
+    private int maxShapes;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * @return 这次查询是否带上profile
+     */
+    public boolean sample(){
+        return enabled && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * 记录一次查询
+     * @param request 请求
+     * @param response 响应
+     * @param roundTripNanos 客户端耗时
+     * @return 没有profile的慢查询返回true, 调用方在后台带上profile再执行一次
+     */
+    public boolean record(SearchRequest request, SearchResponse response, long roundTripNanos){
+        if (!enabled){
+            return false;
+        }
+
+        boolean profiled = request.source() != null && request.source().profile();
+        double roundTripMillis = roundTripNanos / 1_000_000.0;
+        if (!profiled && roundTripMillis < slowThresholdMillis){
+            LAST.remove();
+            return false;
+        }
+
+        QueryProfile profile = profile(shape(request), response, roundTripMillis);
+        LAST.set(profile);
+
+        ShapeStats stats = stats(profile.getShape());
+        if (stats == null){
+            return false;
+        }
+        stats.add(profile);
+
+        if (!profiled){
+            log.warn("慢查询[{}]ms: {}", (long) roundTripMillis, profile.getShape());
+            return stats.claimReprofile(TimeUnit.SECONDS.toMillis(reprofileIntervalSeconds));
+        }
+        return false;
+    }
+
+    /**
+     * 客户端把命中结果转成Map的时间, 记到当前线程最近一次查询上
+     * @param nanos 耗时
+     */
+    public void recordMapping(long nanos){
+        QueryProfile profile = LAST.get();
+        if (profile != null){
+            profile.setMappingMillis(nanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * @return 当前线程最近一次被记录(抽样或者慢查询)的查询, 没有返回null
+     */
+    public static QueryProfile lastProfile(){
+        return LAST.get();
+    }
+
+    /**
+     * 最慢的查询结构
+     * @param limit 条数
+     * @return 查询结构 -> 次数/平均/最大耗时/最近一次profile
+     */
+    public List<Map<String, Object>> report(int limit){
+        return shapes.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, ShapeStats> e) -> e.getValue().maxMillis).reversed())
+                .limit(limit)
+                .map(e -> e.getValue().toMap(e.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 去掉查询值的查询结构
+     * @param indices 索引
+     * @param source 请求体json
+     * @return 查询结构
+     */
+    public static String shape(String indices, String source){
+        String normalized = VALUE_ARRAY.matcher(source).replaceAll("[?]");
+        normalized = NUMBER_VALUE.matcher(STRING_VALUE.matcher(normalized).replaceAll(":\"?\"")).replaceAll(":?");
+        return indices + " " + normalized.replaceAll("\\s+", "");
+    }
+
+    /**
+     * 解析 profile 结果, 没有profile时只有客户端和took的时间
+     */
+    static QueryProfile profile(String shape, SearchResponse response, double roundTripMillis){
+        QueryProfile profile = new QueryProfile();
+        profile.setShape(shape);
+        profile.setTimestamp(System.currentTimeMillis());
+        profile.setRoundTripMillis(roundTripMillis);
+        profile.setTookMillis(response.getTookInMillis());
+        profile.setTransportMillis(Math.max(0, roundTripMillis - response.getTookInMillis()));
+
+        Map<String, ProfileShardResult> results = response.getProfileResults();
+        if (results == null || results.isEmpty()){
+            return profile;
+        }
+
+        profile.setProfiled(true);
+        double slowestShard = 0;
+        for (Map.Entry<String, ProfileShardResult> entry : results.entrySet()) {
+            QueryProfile.ShardTiming timing = new QueryProfile.ShardTiming();
+            timing.setShard(entry.getKey());
+            for (QueryProfileShardResult result : entry.getValue().getQueryProfileResults()) {
+                timing.setRewriteMillis(timing.getRewriteMillis() + millis(result.getRewriteTime()));
+                timing.setCollectMillis(timing.getCollectMillis() + millis(result.getCollectorResult().getTime()));
+                for (ProfileResult query : result.getQueryResults()) {
+                    timing.setQueryMillis(timing.getQueryMillis() + millis(query.getTime()));
+                    slowest(query, timing);
+                }
+            }
+            profile.getShards().add(timing);
+            slowestShard = Math.max(slowestShard, timing.getRewriteMillis() + timing.getQueryMillis() + timing.getCollectMillis());
+        }
+
+        profile.getShards().sort(Comparator.comparingDouble(QueryProfile.ShardTiming::getQueryMillis).reversed());
+        profile.setQueryMillis(slowestShard);
+        profile.setFetchAndReduceMillis(Math.max(0, response.getTookInMillis() - slowestShard));
+        return profile;
+    }
+
+    /**
+     * 找出最耗时的叶子查询, 父查询的时间包含子查询
+     */
+    private static void slowest(ProfileResult query, QueryProfile.ShardTiming timing){
+        if (query.getProfiledChildren().isEmpty()){
+            double millis = millis(query.getTime());
+            if (millis >= timing.getSlowestQueryMillis()){
+                timing.setSlowestQueryMillis(millis);
+                timing.setSlowestQuery(query.getQueryName() + " " + query.getLuceneDescription());
+            }
+            return;
+        }
+        for (ProfileResult child : query.getProfiledChildren()) {
+            slowest(child, timing);
+        }
+    }
+
+    private static double millis(long nanos){
+        return nanos / 1_000_000.0;
+    }
+
+    private static String shape(SearchRequest request){
+        return shape(String.join(",", request.indices()), request.source() == null ? "" : request.source().toString());
+    }
+
+    private ShapeStats stats(String shape){
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null && shapes.size() < maxShapes){
+            stats = shapes.computeIfAbsent(shape, k -> new ShapeStats());
+        }
+        return stats;
+    }
+
+    private static class ShapeStats {
+
+        private long count;
+
+        private double totalMillis;
+
+        private double maxMillis;
+
+        private long lastReprofile;
+
+        private QueryProfile worst;
+
+        private QueryProfile lastProfiled;
+
+        synchronized void add(QueryProfile profile){
+            count++;
+            totalMillis += profile.getRoundTripMillis();
+            if (profile.getRoundTripMillis() >= maxMillis){
+                maxMillis = profile.getRoundTripMillis();
+                worst = profile;
+            }
+            if (profile.isProfiled()){
+                lastProfiled = profile;
+            }
+        }
+
+        synchronized boolean claimReprofile(long intervalMillis){
+            long now = System.currentTimeMillis();
+            if (now - lastReprofile < intervalMillis){
+                return false;
+            }
+            lastReprofile = now;
+            return true;
+        }
+
+        synchronized Map<String, Object> toMap(String shape){
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("shape", shape);
+            map.put("count", count);
+            map.put("avgMillis", totalMillis / count);
+            map.put("maxMillis", maxMillis);
+            map.put("worst", worst);
+            map.put("profile", lastProfiled);
+            return map;
+        }
+    }
+}
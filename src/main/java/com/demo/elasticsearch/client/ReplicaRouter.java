@@ -0,0 +1,338 @@
+package com.demo.elasticsearch.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * @author agent
+ * @date Create in 11:26 2026/10/19
+ * @Description 读请求(search/get)的节点选择:
+ * 1. 每个节点记录EWMA延迟和在途请求数, 通过 preference=_prefer_nodes:{nodeId} 让请求优先落在最快的节点上
+ * 2. 可选的对冲请求: 超过最近延迟的p95还没返回时, 向次快的节点再发一份, 先返回的生效, 后返回的直接丢弃
+ * 业务代码里已经指定了preference的请求不做处理
+ */
+@Component
+@Slf4j
+public class ReplicaRouter {
+
+    private static final String PREFER_NODES = "_prefer_nodes:";
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    private static final int LATENCY_WINDOW = 1024;
+
+    @Autowired
+    private TransportClient client;
+
+    @Value("${elasticsearch.routing.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${elasticsearch.routing.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    /**
+     * 对冲请求的延迟分位数
+     */
+    @Value("${elasticsearch.routing.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    /**
+     * 对冲请求的最小延迟(毫秒), 防止延迟很低时对冲太多
+     */
+    @Value("${elasticsearch.routing.hedge.min-delay-millis:10}")
+    private long hedgeMinDelayMillis;
+
+    /**
+     * 样本数不够时不对冲
+     */
+    @Value("${elasticsearch.routing.hedge.min-samples:100}")
+    private int hedgeMinSamples;
+
+    private final ConcurrentMap<String, NodeStats> nodeStats = new ConcurrentHashMap<>();
+
+    /**
+     * 最近的延迟样本(纳秒), 环形数组, 用来计算对冲延迟
+     */
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    private final AtomicInteger latencyCursor = new AtomicInteger();
+
+    private final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "es-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy(){
+        hedgeTimer.shutdownNow();
+    }
+
+    /**
+     * 执行search请求
+     * @param request 请求
+     * @return 响应
+     */
+    public SearchResponse search(SearchRequest request){
+        return search(request, null);
+    }
+
+    /**
+     * 执行search请求
+     * @param request 请求
+     * @param timeout 等待响应的超时时间, null不限
+     * @return 响应
+     */
+    public SearchResponse search(SearchRequest request, TimeValue timeout){
+        if (!adaptive || StringUtils.isNotEmpty(request.preference())){
+            return timeout == null ? client.search(request).actionGet() : client.search(request).actionGet(timeout);
+        }
+        return execute(request, ReplicaRouter::copy, (r, p) -> r.preference(p), client::search, timeout);
+    }
+
+    /**
+     * 执行get请求
+     * @param request 请求
+     * @return 响应
+     */
+    public GetResponse get(GetRequest request){
+        return get(request, null);
+    }
+
+    /**
+     * 执行get请求
+     * @param request 请求
+     * @param timeout 等待响应的超时时间, null不限
+     * @return 响应
+     */
+    public GetResponse get(GetRequest request, TimeValue timeout){
+        if (!adaptive || StringUtils.isNotEmpty(request.preference())){
+            return timeout == null ? client.get(request).actionGet() : client.get(request).actionGet(timeout);
+        }
+        return execute(request, ReplicaRouter::copy, (r, p) -> r.preference(p), client::get, timeout);
+    }
+
+    /**
+     * @return 节点id -> [ewma延迟(毫秒), 在途请求数]
+     */
+    public Map<String, double[]> snapshot(){
+        Map<String, double[]> snapshot = new TreeMap<>();
+        nodeStats.forEach((nodeId, stats) -> snapshot.put(nodeId, new double[]{stats.ewmaNanos / 1_000_000d, stats.inFlight.get()}));
+        return snapshot;
+    }
+
+    private <Req extends ActionRequest, Resp> Resp execute(Req request, UnaryOperator<Req> copier, BiConsumer<Req, String> preference,
+                                                           BiConsumer<Req, ActionListener<Resp>> sender, TimeValue timeout){
+        List<DiscoveryNode> nodes = dataNodes();
+        if (nodes.isEmpty()){
+            CompletableFuture<Resp> result = new CompletableFuture<>();
+            sender.accept(request, listener(result, new AtomicInteger(1), null, 0));
+            return await(result, timeout);
+        }
+
+        CompletableFuture<Resp> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+
+        // 节点偏好设置在副本上, 原请求不带偏好, 重试时会重新选择节点, 不会再发往刚失败/超时的节点
+        NodeStats primary = select(nodes, null);
+        Req routed = copier.apply(request);
+        preference.accept(routed, PREFER_NODES + primary.nodeId);
+        primary.inFlight.incrementAndGet();
+        sender.accept(routed, listener(result, pending, primary, System.nanoTime()));
+
+        ScheduledFuture<?> hedge = null;
+        long delay = hedgeDelayNanos();
+        if (delay > 0 && nodes.size() > 1){
+            hedge = hedgeTimer.schedule(() -> {
+                if (result.isDone()){
+                    return;
+                }
+                Req copy = copier.apply(request);
+                NodeStats secondary = select(nodes, primary.nodeId);
+                preference.accept(copy, PREFER_NODES + secondary.nodeId);
+                log.debug("节点[{}]超过[{}]us未返回, 对冲请求发往[{}]", primary.nodeId, delay / 1000, secondary.nodeId);
+
+                pending.incrementAndGet();
+                secondary.inFlight.incrementAndGet();
+                sender.accept(copy, listener(result, pending, secondary, System.nanoTime()));
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            return await(result, timeout);
+        } finally {
+            if (hedge != null){
+                hedge.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 先返回的生效; 一个失败时等另一个, 都失败才抛出异常
+     */
+    private <Resp> ActionListener<Resp> listener(CompletableFuture<Resp> result, AtomicInteger pending, NodeStats node, long start){
+        return new ActionListener<Resp>() {
+            @Override
+            public void onResponse(Resp response) {
+                record(node, System.nanoTime() - start);
+                pending.decrementAndGet();
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // 失败按4倍延迟计, 降低这个节点的优先级
+                if (node != null){
+                    record(node, Math.max(System.nanoTime() - start, (long) node.ewmaNanos * 4));
+                }
+                if (pending.decrementAndGet() <= 0){
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+    }
+
+    private static <Resp> Resp await(CompletableFuture<Resp> result, TimeValue timeout){
+        try {
+            return timeout == null ? result.get() : result.get(timeout.millis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e){
+            throw new ElasticsearchTimeoutException("no response within [" + timeout + "]");
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for elasticsearch response", e);
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void record(NodeStats node, long nanos){
+        if (node == null){
+            return;
+        }
+        node.inFlight.decrementAndGet();
+        synchronized (node){
+            node.ewmaNanos = node.ewmaNanos == 0 ? nanos : EWMA_ALPHA * nanos + (1 - EWMA_ALPHA) * node.ewmaNanos;
+        }
+        latencies[Math.floorMod(latencyCursor.getAndIncrement(), LATENCY_WINDOW)] = nanos;
+    }
+
+    /**
+     * 选分数最低的节点, 分数 = ewma延迟 * (1 + 在途请求数), 没有样本的节点分数为0, 会被优先探测
+     */
+    private NodeStats select(List<DiscoveryNode> nodes, String exclude){
+        NodeStats best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (DiscoveryNode node : nodes) {
+            if (node.getId().equals(exclude)){
+                continue;
+            }
+            NodeStats stats = nodeStats.computeIfAbsent(node.getId(), NodeStats::new);
+            double score = stats.ewmaNanos * (1 + stats.inFlight.get());
+            if (best == null || score < bestScore){
+                best = stats;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private List<DiscoveryNode> dataNodes(){
+        List<DiscoveryNode> nodes = new ArrayList<>();
+        for (DiscoveryNode node : client.connectedNodes()) {
+            if (node.isDataNode()){
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return 对冲延迟(纳秒), 不对冲返回0
+     */
+    private long hedgeDelayNanos(){
+        int samples = Math.min(latencyCursor.get(), LATENCY_WINDOW);
+        if (!hedgeEnabled || samples < hedgeMinSamples){
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        long percentile = sorted[Math.min(samples - 1, (int) (samples * hedgePercentile))];
+        return Math.max(percentile, TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMillis));
+    }
+
+    /**
+     * 复制请求用于设置节点偏好(主请求和对冲请求), 原请求在节点失败时还会被重发, 不能直接修改; 请求体只读, 可以共享
+     */
+    private static SearchRequest copy(SearchRequest request){
+        SearchRequest copy = new SearchRequest(request.indices(), request.source())
+                .types(request.types())
+                .routing(request.routing())
+                .searchType(request.searchType())
+                .requestCache(request.requestCache())
+                .indicesOptions(request.indicesOptions());
+        if (request.scroll() != null){
+            copy.scroll(request.scroll());
+        }
+        return copy;
+    }
+
+    private static GetRequest copy(GetRequest request){
+        return new GetRequest(request.index(), request.type(), request.id())
+                .routing(request.routing())
+                .storedFields(request.storedFields())
+                .fetchSourceContext(request.fetchSourceContext())
+                .realtime(request.realtime())
+                .refresh(request.refresh())
+                .version(request.version())
+                .versionType(request.versionType());
+    }
+
+    private static final class NodeStats {
+
+        private final String nodeId;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private volatile double ewmaNanos;
+
+        private NodeStats(String nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+}
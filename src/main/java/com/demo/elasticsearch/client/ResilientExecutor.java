@@ -0,0 +1,240 @@
+package com.demo.elasticsearch.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.transport.TransportException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * @author agent
+ * @date Create in 11:30 2026/10/19
+ * @Description es调用的容错: 每种操作单独的超时时间, 带随机抖动的指数退避重试, 集群不健康时熔断快速失败
+ * 重试规则: 请求被拒绝(429, 没有执行)所有操作都重试; 超时/节点不可用只重试幂等的操作
+ * 只有es返回的异常才会计入熔断, 本地的异常(调用里的bug/序列化错误/线程被中断)直接抛出, 不影响熔断状态
+ */
+@Component
+@Slf4j
+public class ResilientExecutor {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 最多尝试次数(包括第一次)
+     */
+    @Value("${elasticsearch.resilience.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 第一次重试的退避时间(毫秒), 之后每次翻倍
+     */
+    @Value("${elasticsearch.resilience.backoff-millis:50}")
+    private long backoffMillis;
+
+    @Value("${elasticsearch.resilience.max-backoff-millis:1000}")
+    private long maxBackoffMillis;
+
+    /**
+     * 连续失败多少次熔断
+     */
+    @Value("${elasticsearch.resilience.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    /**
+     * 熔断后多久放探测请求(毫秒)
+     */
+    @Value("${elasticsearch.resilience.breaker.open-millis:30000}")
+    private long openMillis;
+
+    private final Map<Operation, TimeValue> timeouts = new EnumMap<>(Operation.class);
+
+    private CircuitBreaker breaker;
+
+    private Counter retries;
+
+    private Counter shortCircuited;
+
+    @PostConstruct
+    public void init(){
+        for (Operation operation : Operation.values()) {
+            String timeout = environment.getProperty("elasticsearch.resilience.timeout." + operation.getKey(), defaultTimeout(operation));
+            timeouts.put(operation, TimeValue.parseTimeValue(timeout, "elasticsearch.resilience.timeout." + operation.getKey()));
+        }
+        log.info("es操作超时时间:{}", timeouts);
+
+        breaker = new CircuitBreaker("elasticsearch", failureThreshold, openMillis);
+
+        if (meterRegistry != null){
+            Gauge.builder("elasticsearch.circuit.breaker.state", breaker, b -> b.getState().ordinal())
+                    .description("0 closed, 1 half-open, 2 open")
+                    .register(meterRegistry);
+            retries = Counter.builder("elasticsearch.client.retries").register(meterRegistry);
+            shortCircuited = Counter.builder("elasticsearch.client.short.circuited").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 执行一次es调用
+     * @param operation 操作类型
+     * @param call 实际的调用, 参数是这次调用的超时时间
+     * @param <T> 返回值类型
+     * @return 调用结果
+     */
+    public <T> T execute(Operation operation, Function<TimeValue, T> call){
+        TimeValue timeout = timeouts.get(operation);
+
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.allowRequest()){
+                increment(shortCircuited);
+                throw new ClusterUnavailableException("elasticsearch circuit breaker is open, " + operation.getKey() + " rejected");
+            }
+
+            try {
+                T result = call.apply(timeout);
+                breaker.onSuccess();
+                return result;
+            } catch (LimitExceededException e){
+                // 本地并发已满, 请求没有发到集群, 不计入熔断, 和429一样退避后重试
+                breaker.onIgnored();
+                if (attempt >= maxAttempts){
+                    throw e;
+                }
+                backoffBeforeRetry(operation, attempt, e);
+            } catch (RuntimeException e){
+                if (!isElasticsearchFailure(e)){
+                    // 本地异常, 请求可能根本没有发出去, 和集群是否健康无关
+                    breaker.onIgnored();
+                    throw e;
+                }
+                if (!isInfrastructureFailure(e)){
+                    // 集群正常返回了业务错误(参数错误/文档不存在等), 不算失败
+                    breaker.onSuccess();
+                    throw e;
+                }
+
+                breaker.onFailure();
+                if (attempt >= maxAttempts || !isRetryable(operation, e)){
+                    throw e;
+                }
+
+                backoffBeforeRetry(operation, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * @return 熔断器状态
+     */
+    public CircuitBreaker.State breakerState(){
+        return breaker.getState();
+    }
+
+    /**
+     * @param operation 操作类型
+     * @return 这种操作的超时时间
+     */
+    public TimeValue timeout(Operation operation){
+        return timeouts.get(operation);
+    }
+
+    /**
+     * 集群层面的失败(节点不可用/连接断开/超时/拒绝/es返回的5xx), 会计入熔断
+     * 不是es异常的(客户端本地的NPE/IllegalStateException等)不算, ExceptionsHelper.status 会把它们都当成500
+     * @param e 调用抛出的异常
+     * @return true 集群层面的失败
+     */
+    public static boolean isInfrastructureFailure(Throwable e){
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        if (cause instanceof EsRejectedExecutionException
+                || cause instanceof NoNodeAvailableException
+                || cause instanceof TransportException
+                || cause instanceof ElasticsearchTimeoutException){
+            return true;
+        }
+        if (!isElasticsearchFailure(e)){
+            return false;
+        }
+        RestStatus status = ExceptionsHelper.status(cause);
+        return status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500;
+    }
+
+    /**
+     * @param e 调用抛出的异常
+     * @return true 异常来自es(集群返回的错误都包装在 ElasticsearchException 里, 例如 RemoteTransportException)
+     */
+    public static boolean isElasticsearchFailure(Throwable e){
+        return e instanceof ElasticsearchException || ExceptionsHelper.unwrapCause(e) instanceof ElasticsearchException;
+    }
+
+    static boolean isRetryable(Operation operation, Throwable e){
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        if (cause instanceof EsRejectedExecutionException || ExceptionsHelper.status(cause) == RestStatus.TOO_MANY_REQUESTS){
+            return true;
+        }
+        return operation.isIdempotent();
+    }
+
+    private void backoffBeforeRetry(Operation operation, int attempt, RuntimeException e){
+        long backoff = backoff(attempt);
+        log.warn("es操作[{}]第[{}]次失败, {}ms后重试: {}", operation.getKey(), attempt, backoff, e.getMessage());
+        increment(retries);
+        sleep(backoff);
+    }
+
+    /**
+     * 指数退避 + 全抖动
+     */
+    private long backoff(int attempt){
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static void sleep(long millis){
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while backing off", e);
+        }
+    }
+
+    private static void increment(Counter counter){
+        if (counter != null){
+            counter.increment();
+        }
+    }
+
+    private static String defaultTimeout(Operation operation){
+        switch (operation){
+            case GET:
+                return "5s";
+            case BULK:
+                return "60s";
+            case ADMIN_WRITE:
+                return "30s";
+            default:
+                return "10s";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.elasticsearch.config;
 
+import com.demo.elasticsearch.util.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
@@ -35,9 +36,30 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.cluster.name}")
     private String clusterName;
 
-    @Bean
+    /**
+     * 传输层压缩, 带宽有限的链路上减少传输的字节数
+     */
+    @Value("${elasticsearch.transport.compress:false}")
+    private boolean compress;
+
+    /**
+     * true: 创建client时不连接集群, 由 StartupWarmer 在后台连接, 不阻塞应用启动
+     */
+    @Value("${elasticsearch.startup.connect-in-background:false}")
+    private boolean connectInBackground;
+
+    /**
+     * 没有指定id时的id生成方式: flake 按时间递增 / hash 按内容去重 / server 由es生成
+     */
+    @Value("${elasticsearch.id.strategy:flake}")
+    private String idStrategy;
+
+    /**
+     * 初始化失败直接抛出异常让应用启动失败, 不返回null的client
+     */
+    @Bean(destroyMethod = "close")
     public TransportClient init(){
-        TransportClient transportClient = null;
+        TransportClient transportClient;
         try {
             // 配置
             Settings settings = Settings.builder()
@@ -46,16 +68,27 @@ public class ElasticsearchConfig {
                     .put("client.transport.sniff", true)
                     // 增加线程池个数
                     .put("thread_pool.search.size", poolSize)
+                    // 请求压缩, 响应是否压缩由服务端的 transport.tcp.compress 决定
+                    .put("transport.tcp.compress", compress)
                     .build();
 
-            transportClient = new PreBuiltTransportClient(settings)
-                    // 设置地址端口号
-                    .addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostName), port));
+            transportClient = new PreBuiltTransportClient(settings);
+            if (!connectInBackground){
+                // 设置地址端口号
+                transportClient.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostName), port));
+            }
 
         } catch (Exception e){
             log.error("elasticsearch TransportClient init error,{}", e);
+            throw new IllegalStateException("elasticsearch TransportClient init error", e);
         }
 
         return transportClient;
     }
+
+    @Bean
+    public IdGenerator idGenerator(){
+        log.info("document id生成方式:{}", idStrategy);
+        return IdGenerator.of(idStrategy);
+    }
 }
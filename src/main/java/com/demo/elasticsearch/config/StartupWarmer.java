@@ -0,0 +1,281 @@
+package com.demo.elasticsearch.config;
+
+import com.demo.elasticsearch.schema.SchemaManager;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @date Create in 11:53 2026/10/19
+ * @Description 启动预热: 应用启动完成后在后台 连接集群(connect-in-background) -> 拉取集群元数据和mapping -> 执行若干轮热点查询,
+ * 让连接握手/JIT/元数据缓存的开销发生在流量进来之前. 预热完成前健康检查返回 OUT_OF_SERVICE, 负载均衡可以据此摘除流量
+ * 预热失败时健康检查返回 DOWN, 后台按指数退避重试, 重试成功后恢复 UP
+ */
+@Component
+@Slf4j
+public class StartupWarmer implements HealthIndicator {
+
+    private enum Phase { STARTING, CONNECTING, WARMING, READY, FAILED }
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${elasticsearch.ip}")
+    private String hostName;
+
+    @Value("${elasticsearch.port}")
+    private int port;
+
+    @Value("${elasticsearch.startup.connect-in-background:false}")
+    private boolean connectInBackground;
+
+    /**
+     * 预热查询的索引, 逗号分隔, 为空只连接和拉取元数据
+     */
+    @Value("${elasticsearch.startup.warm-indices:}")
+    private String warmIndices;
+
+    /**
+     * 每个索引执行几轮预热查询
+     */
+    @Value("${elasticsearch.startup.warm-rounds:20}")
+    private int warmRounds;
+
+    /**
+     * 预热的热点查询, 多个查询用分号分隔, 一个查询里的条件 field=value 用逗号分隔, 例如 brand=宝马;brand=奔驰,color=白色
+     * 为空时每个索引执行一次不带条件的查询
+     */
+    @Value("${elasticsearch.startup.warm-queries:}")
+    private String warmQueries;
+
+    /**
+     * 等待连接集群的最长时间(毫秒), 超过之后健康检查返回 DOWN
+     */
+    @Value("${elasticsearch.startup.connect-timeout-millis:60000}")
+    private long connectTimeoutMillis;
+
+    /**
+     * 预热失败后第一次重试的等待时间(毫秒), 之后每次翻倍, 0 不重试
+     */
+    @Value("${elasticsearch.startup.retry-initial-millis:1000}")
+    private long retryInitialMillis;
+
+    /**
+     * 重试等待时间的上限(毫秒)
+     */
+    @Value("${elasticsearch.startup.retry-max-millis:60000}")
+    private long retryMaxMillis;
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private volatile Phase phase = Phase.STARTING;
+
+    private volatile String error;
+
+    /**
+     * 已经执行的预热次数, 包括重试
+     */
+    private volatile int attempts;
+
+    /**
+     * JVM启动到预热完成的时间
+     */
+    private volatile long timeToReadyMillis = -1;
+
+    /**
+     * 第一次查询的耗时
+     */
+    private volatile long firstQueryMillis = -1;
+
+    /**
+     * 最后一轮预热查询的耗时
+     */
+    private volatile long warmQueryMillis = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start(){
+        if (meterRegistry != null){
+            Gauge.builder("elasticsearch.startup.time.to.ready", this, w -> w.timeToReadyMillis).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("elasticsearch.startup.first.query", this, w -> w.firstQueryMillis).baseUnit("milliseconds").register(meterRegistry);
+        }
+
+        Thread thread = new Thread(this::warmUp, "elasticsearch-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 等待第一次预热结束(成功或失败), 失败后的重试不再等待
+     * @param timeoutMillis 最长等待时间
+     * @return true 已经可以接收流量
+     */
+    public boolean awaitReady(long timeoutMillis) throws InterruptedException {
+        return ready.await(timeoutMillis, TimeUnit.MILLISECONDS) && phase == Phase.READY;
+    }
+
+    @Override
+    public Health health(){
+        Health.Builder builder;
+        switch (phase){
+            case READY:
+                builder = Health.up();
+                break;
+            case FAILED:
+                builder = Health.down().withDetail("error", error);
+                break;
+            default:
+                builder = Health.outOfService();
+        }
+        return builder.withDetail("phase", phase.name())
+                .withDetail("attempts", attempts)
+                .withDetail("connectedNodes", client.connectedNodes().size())
+                .withDetail("timeToReadyMillis", timeToReadyMillis)
+                .withDetail("firstQueryMillis", firstQueryMillis)
+                .withDetail("warmQueryMillis", warmQueryMillis)
+                .build();
+    }
+
+    /**
+     * 失败后按指数退避重试, 直到成功
+     */
+    private void warmUp(){
+        long backoff = retryInitialMillis;
+        while (!attempt()){
+            ready.countDown();
+            if (retryInitialMillis <= 0){
+                return;
+            }
+            log.warn("es预热第[{}]次失败, [{}]ms后重试", attempts, backoff);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, retryMaxMillis);
+        }
+        ready.countDown();
+    }
+
+    /**
+     * @return true 预热完成
+     */
+    private boolean attempt(){
+        attempts++;
+        try {
+            phase = Phase.CONNECTING;
+            connect();
+
+            phase = Phase.WARMING;
+            if (connectInBackground && schemaManager.isVerifyOnStartup()){
+                schemaManager.verifyLiveMappings();
+            }
+            List<Map<String, String>> queries = parseWarmQueries(warmQueries);
+            for (String index : warmIndices.split(",")) {
+                if (!index.trim().isEmpty()){
+                    warmIndex(index.trim(), queries);
+                }
+            }
+
+            timeToReadyMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+            error = null;
+            phase = Phase.READY;
+            log.info("es预热完成, 启动到就绪[{}]ms, 第一次查询[{}]ms, 预热后查询[{}]ms", timeToReadyMillis, firstQueryMillis, warmQueryMillis);
+            return true;
+        } catch (Exception e){
+            error = e.getMessage();
+            phase = Phase.FAILED;
+            log.error("es预热失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * @param warmQueries 分号分隔的查询, 每个查询是逗号分隔的 field=value
+     * @return 每个查询的 matchMap, 没有配置时是一个空条件
+     */
+    private static List<Map<String, String>> parseWarmQueries(String warmQueries){
+        List<Map<String, String>> queries = new ArrayList<>();
+        for (String query : warmQueries.split(";")) {
+            Map<String, String> matchMap = new HashMap<>();
+            for (String condition : query.split(",")) {
+                int separator = condition.indexOf('=');
+                if (separator > 0){
+                    matchMap.put(condition.substring(0, separator).trim(), condition.substring(separator + 1).trim());
+                }
+            }
+            if (!matchMap.isEmpty()){
+                queries.add(matchMap);
+            }
+        }
+        if (queries.isEmpty()){
+            queries.add(Collections.emptyMap());
+        }
+        return queries;
+    }
+
+    private void connect() throws Exception {
+        if (client.transportAddresses().isEmpty()){
+            client.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostName), port));
+        }
+
+        // 连不上的地址client会在后台定期重试, 这里只等待
+        long deadline = System.currentTimeMillis() + connectTimeoutMillis;
+        while (client.connectedNodes().isEmpty()){
+            if (System.currentTimeMillis() > deadline){
+                throw new IllegalStateException("no elasticsearch node connected within " + connectTimeoutMillis + "ms");
+            }
+            Thread.sleep(200);
+        }
+        log.info("es集群已连接, 节点数[{}]", client.connectedNodes().size());
+    }
+
+    private void warmIndex(String index, List<Map<String, String>> queries){
+        // 元数据缓存
+        if (!ElasticsearchUtils.indexExist(index)){
+            log.warn("预热索引[{}]不存在, 跳过", index);
+            return;
+        }
+
+        for (int round = 0; round < warmRounds; round++) {
+            long start = System.nanoTime();
+            for (Map<String, String> matchMap : queries) {
+                ElasticsearchUtils.searchDocument(index, null, matchMap, null);
+            }
+            ElasticsearchUtils.countDocument(index, null, 0, 0, null, false);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            if (firstQueryMillis < 0){
+                firstQueryMillis = millis;
+            }
+            warmQueryMillis = millis;
+        }
+    }
+}
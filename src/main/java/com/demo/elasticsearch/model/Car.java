@@ -0,0 +1,60 @@
+package com.demo.elasticsearch.model;
+
+import com.demo.elasticsearch.annotation.EsDocument;
+import com.demo.elasticsearch.annotation.EsField;
+import com.demo.elasticsearch.annotation.EsFieldType;
+import com.demo.elasticsearch.schema.MappingBuilder;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 汽车信息
+ */
+@Getter
+@Setter
+@EsDocument(index = "car_shop", type = "cars")
+public class Car {
+
+    /**
+     * 品牌
+     */
+    @EsField(type = EsFieldType.TEXT, keywordSubField = "keyword", autocompleteSubField = "autocomplete")
+    private String brand;
+
+    /**
+     * 车型
+     */
+    @EsField(type = EsFieldType.TEXT, keywordSubField = "raw", autocompleteSubField = "autocomplete")
+    private String name;
+
+    /**
+     * 售价
+     */
+    @EsField(type = EsFieldType.LONG)
+    private Long price;
+
+    /**
+     * 生产日期
+     */
+    @JsonProperty("produce_date")
+    @EsField(type = EsFieldType.DATE, format = "yyyy-MM-dd")
+    private String produceDate;
+
+    /**
+     * 图片地址, 只用来展示
+     */
+    @JsonProperty("image_url")
+    @EsField(type = EsFieldType.KEYWORD, index = false, docValues = false)
+    private String imageUrl;
+
+    /**
+     * 输入提示, 写入时填品牌和车型, 例如 ["宝马", "宝马320"]
+     */
+    @EsField(type = EsFieldType.COMPLETION, analyzer = MappingBuilder.AUTOCOMPLETE_SEARCH_ANALYZER)
+    private List<String> suggest;
+}
@@ -0,0 +1,34 @@
+package com.demo.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 变更流里的一条新增/更新的document
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeEvent {
+
+    private String index;
+
+    private String type;
+
+    private String id;
+
+    /**
+     * document的版本号, 消费方可以用来做幂等
+     */
+    private long version;
+
+    /**
+     * 写入时间(epoch_millis)
+     */
+    private long processTime;
+
+    private Map<String, Object> source;
+}
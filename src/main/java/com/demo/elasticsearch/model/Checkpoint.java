@@ -0,0 +1,19 @@
+package com.demo.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 变更流的读取位置: 最后一条已处理document的 processTime 和 _uid(type#id)
+ * 两个值一起作为 search_after 的参数, 同一毫秒写入的多条document不会在批次边界上重复或遗漏
+ */
+@Getter
+@AllArgsConstructor
+public class Checkpoint {
+
+    private long processTime;
+
+    private String uid;
+}
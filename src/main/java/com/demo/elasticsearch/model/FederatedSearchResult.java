@@ -0,0 +1,57 @@
+package com.demo.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.elasticsearch.search.aggregations.Aggregations;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 12:11 2026/10/19
+ * @Description 多个集群合并后的查询结果
+ */
+@Getter
+@AllArgsConstructor
+public class FederatedSearchResult {
+
+    /**
+     * 合并排序后的一页结果, 每条除了_source还有 id 和 cluster(来自哪个集群)
+     */
+    private List<Map<String, Object>> hits;
+
+    /**
+     * 各集群命中数之和
+     */
+    private long total;
+
+    private float maxScore;
+
+    /**
+     * 各集群的聚合结果按聚合类型合并(reduce)后的结果, 没有聚合为null
+     */
+    private Aggregations aggregations;
+
+    /**
+     * 各集群的耗时(毫秒)
+     */
+    private Map<String, Long> took;
+
+    /**
+     * 没有返回结果的集群和原因(超时/熔断/异常), 这些集群的数据不在结果里
+     */
+    private Map<String, String> failures;
+
+    /**
+     * 有集群在服务端超时, 只返回了部分分片的结果
+     */
+    private boolean timedOut;
+
+    /**
+     * @return true 所有集群都返回了结果
+     */
+    public boolean isComplete(){
+        return failures.isEmpty() && !timedOut;
+    }
+}
@@ -0,0 +1,81 @@
+package com.demo.elasticsearch.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author agent
+ * @date Create in 12:04 2026/10/19
+ * @Description 一次查询的耗时分解, 时间单位都是毫秒
+ */
+@Getter
+@Setter
+public class QueryProfile {
+
+    /**
+     * 查询结构(去掉了查询值), 同一结构的查询聚合在一起
+     */
+    private String shape;
+
+    private long timestamp;
+
+    /**
+     * 客户端从发出请求到收到响应
+     */
+    private double roundTripMillis;
+
+    /**
+     * es返回的took, 从协调节点收到请求到返回
+     */
+    private double tookMillis;
+
+    /**
+     * roundTrip - took, 网络传输和客户端序列化/反序列化
+     */
+    private double transportMillis;
+
+    /**
+     * 最慢分片的query阶段(rewrite + 查询 + collector), 只有profile的查询才有
+     */
+    private double queryMillis;
+
+    /**
+     * took - 最慢分片的query阶段, 包括fetch(取_source/高亮)和协调节点的合并
+     */
+    private double fetchAndReduceMillis;
+
+    /**
+     * 客户端把命中结果转成Map的时间
+     */
+    private double mappingMillis;
+
+    private boolean profiled;
+
+    private List<ShardTiming> shards = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class ShardTiming {
+
+        /**
+         * [nodeId][index][shard]
+         */
+        private String shard;
+
+        private double rewriteMillis;
+
+        private double queryMillis;
+
+        private double collectMillis;
+
+        /**
+         * 最耗时的查询节点, 例如 TermQuery brand:宝马
+         */
+        private String slowestQuery;
+
+        private double slowestQueryMillis;
+    }
+}
@@ -0,0 +1,82 @@
+package com.demo.elasticsearch.model;
+
+import com.demo.elasticsearch.annotation.EsDocument;
+import com.demo.elasticsearch.annotation.EsField;
+import com.demo.elasticsearch.annotation.EsFieldType;
+import com.demo.elasticsearch.annotation.EsJoin;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 汽车销售记录
+ */
+@Getter
+@Setter
+@EsDocument(index = "car_shop", type = "sales", routing = "shop_id")
+public class Sale {
+
+    /**
+     * 品牌
+     */
+    @EsField(type = EsFieldType.TEXT, keywordSubField = "keyword")
+    private String brand;
+
+    /**
+     * 车型
+     */
+    @EsField(type = EsFieldType.TEXT, keywordSubField = "raw")
+    private String name;
+
+    /**
+     * 指导价
+     */
+    @EsField(type = EsFieldType.LONG)
+    private Long price;
+
+    /**
+     * 生产日期
+     */
+    @JsonProperty("produce_date")
+    @EsField(type = EsFieldType.DATE, format = "yyyy-MM-dd")
+    private String produceDate;
+
+    /**
+     * 成交价
+     */
+    @JsonProperty("sale_price")
+    @EsField(type = EsFieldType.LONG)
+    private Long salePrice;
+
+    /**
+     * 成交日期
+     */
+    @JsonProperty("sale_date")
+    @EsField(type = EsFieldType.DATE, format = "yyyy-MM-dd")
+    private String saleDate;
+
+    /**
+     * 汽车id, 关联的汽车信息放在 car 下
+     */
+    @JsonProperty("car_id")
+    @EsField(type = EsFieldType.KEYWORD)
+    @EsJoin(type = "cars", as = "car", fields = {"brand", "name", "price", "image_url"})
+    private String carId;
+
+    /**
+     * 4S店id, 同时是路由字段, 一个店的销售记录都在同一个分片上, 关联的店铺信息放在 shop 下
+     */
+    @JsonProperty("shop_id")
+    @EsField(type = EsFieldType.KEYWORD)
+    @EsJoin(type = "shops", as = "shop", fields = {"name", "address"})
+    private String shopId;
+
+    /**
+     * 订单号, 只用来排序和聚合, 不需要倒排索引
+     */
+    @JsonProperty("order_no")
+    @EsField(type = EsFieldType.KEYWORD, index = false)
+    private String orderNo;
+}
@@ -0,0 +1,46 @@
+package com.demo.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 11:47 2026/10/19
+ * @Description 保存的搜索命中了一条新写入的document
+ */
+@Getter
+@AllArgsConstructor
+public class SavedSearchMatch {
+
+    /**
+     * 保存的搜索id
+     */
+    private String savedSearchId;
+
+    /**
+     * 保存这个搜索的用户
+     */
+    private String owner;
+
+    /**
+     * 命中的document所在的索引
+     */
+    private String index;
+
+    /**
+     * 命中的document的类型
+     */
+    private String type;
+
+    /**
+     * 命中的document的id
+     */
+    private String id;
+
+    /**
+     * 命中的document的_source
+     */
+    private Map<String, Object> source;
+}
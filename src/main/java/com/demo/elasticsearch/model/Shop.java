@@ -0,0 +1,47 @@
+package com.demo.elasticsearch.model;
+
+import com.demo.elasticsearch.annotation.EsDocument;
+import com.demo.elasticsearch.annotation.EsField;
+import com.demo.elasticsearch.annotation.EsFieldType;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 汽车4S店信息
+ */
+@Getter
+@Setter
+@EsDocument(index = "car_shop", type = "shops")
+public class Shop {
+
+    /**
+     * 店名
+     */
+    @EsField(type = EsFieldType.TEXT, keywordSubField = "raw")
+    private String name;
+
+    /**
+     * 地址, 只用来展示
+     */
+    @EsField(type = EsFieldType.TEXT, index = false)
+    private String address;
+
+    /**
+     * 位置
+     */
+    @EsField(type = EsFieldType.OBJECT)
+    private Pin pin;
+
+    @Getter
+    @Setter
+    public static class Pin {
+
+        /**
+         * 经纬度, "lat,lon"
+         */
+        @EsField(type = EsFieldType.GEO_POINT)
+        private String location;
+    }
+}
@@ -0,0 +1,36 @@
+package com.demo.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * @author agent
+ * @date Create in 12:01 2026/10/19
+ * @Description 一次快照的结果
+ */
+@Getter
+@AllArgsConstructor
+public class SnapshotResult {
+
+    private String name;
+
+    private List<String> indices;
+
+    /**
+     * SUCCESS / PARTIAL / FAILED
+     */
+    private String state;
+
+    private long durationMillis;
+
+    /**
+     * 本次实际拷贝的文件数和字节数, 和上一个快照相同的段文件不会再拷贝(增量)
+     */
+    private int files;
+
+    private long bytes;
+
+    private int failedShards;
+}
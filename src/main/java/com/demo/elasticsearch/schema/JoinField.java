@@ -0,0 +1,36 @@
+package com.demo.elasticsearch.schema;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author agent
+ * @date Create in 12:15 2026/10/19
+ * @Description 一个 @EsJoin 外键字段
+ */
+@Getter
+@AllArgsConstructor
+public class JoinField {
+
+    /**
+     * 外键字段在es里的名称
+     */
+    private String field;
+
+    /**
+     * 被引用的索引和类型
+     */
+    private String index;
+
+    private String type;
+
+    /**
+     * 关联结果放在哪个字段下
+     */
+    private String as;
+
+    /**
+     * 取被引用document的哪些字段, 空数组取全部
+     */
+    private String[] fields;
+}
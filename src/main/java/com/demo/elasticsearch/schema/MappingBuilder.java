@@ -0,0 +1,129 @@
+package com.demo.elasticsearch.schema;
+
+import com.demo.elasticsearch.annotation.EsDocument;
+import com.demo.elasticsearch.annotation.EsField;
+import com.demo.elasticsearch.annotation.EsFieldType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 根据 @EsDocument/@EsField 注解生成type的mapping
+ */
+public final class MappingBuilder {
+
+    /**
+     * 前缀搜索子字段使用的分析器, 需要在索引settings里定义
+     */
+    public static final String AUTOCOMPLETE_ANALYZER = "autocomplete";
+
+    public static final String AUTOCOMPLETE_SEARCH_ANALYZER = "autocomplete_search";
+
+    private MappingBuilder() {
+    }
+
+    /**
+     * 生成type的mapping, 不包含type名这一层
+     * @param clazz 带 @EsDocument 注解的model
+     * @return mapping
+     */
+    public static Map<String, Object> build(Class<?> clazz){
+        EsDocument document = clazz.getAnnotation(EsDocument.class);
+        if (document == null){
+            throw new IllegalArgumentException(clazz.getName() + " is not annotated with @EsDocument");
+        }
+
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        mapping.put("_all", Collections.singletonMap("enabled", document.allEnabled()));
+        mapping.put("dynamic", document.dynamic());
+        if (StringUtils.isNotEmpty(document.routing())){
+            mapping.put("_routing", Collections.singletonMap("required", true));
+        }
+        mapping.put("properties", properties(clazz));
+        return mapping;
+    }
+
+    /**
+     * @param field 字段
+     * @return 字段在es里的名称, 优先使用 @JsonProperty 的值
+     */
+    public static String fieldName(Field field){
+        JsonProperty jsonProperty = field.getAnnotation(JsonProperty.class);
+        if (jsonProperty != null && StringUtils.isNotEmpty(jsonProperty.value())){
+            return jsonProperty.value();
+        }
+        return field.getName();
+    }
+
+    private static Map<String, Object> properties(Class<?> clazz){
+        Map<String, Object> properties = new LinkedHashMap<>();
+
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                EsField esField = field.getAnnotation(EsField.class);
+                if (esField != null){
+                    properties.put(fieldName(field), fieldMapping(field, esField));
+                }
+            }
+        }
+
+        return properties;
+    }
+
+    private static Map<String, Object> fieldMapping(Field field, EsField esField){
+        Map<String, Object> mapping = new LinkedHashMap<>();
+
+        if (esField.type() == EsFieldType.OBJECT){
+            mapping.put("properties", properties(field.getType()));
+            return mapping;
+        }
+
+        mapping.put("type", esField.type().getName());
+
+        if (!esField.index()){
+            mapping.put("index", false);
+        }
+        // text没有doc_values
+        if (!esField.docValues() && esField.type() != EsFieldType.TEXT){
+            mapping.put("doc_values", false);
+        }
+        if (esField.store()){
+            mapping.put("store", true);
+        }
+        boolean analyzed = esField.type() == EsFieldType.TEXT || esField.type() == EsFieldType.COMPLETION;
+        if (StringUtils.isNotEmpty(esField.analyzer()) && analyzed){
+            mapping.put("analyzer", esField.analyzer());
+        }
+        if (StringUtils.isNotEmpty(esField.searchAnalyzer()) && analyzed){
+            mapping.put("search_analyzer", esField.searchAnalyzer());
+        }
+        if (StringUtils.isNotEmpty(esField.format()) && esField.type() == EsFieldType.DATE){
+            mapping.put("format", esField.format());
+        }
+        Map<String, Object> subFields = new LinkedHashMap<>();
+        if (StringUtils.isNotEmpty(esField.keywordSubField()) && esField.type() == EsFieldType.TEXT){
+            Map<String, Object> keyword = new LinkedHashMap<>();
+            keyword.put("type", EsFieldType.KEYWORD.getName());
+            keyword.put("ignore_above", 256);
+            subFields.put(esField.keywordSubField(), keyword);
+        }
+        if (StringUtils.isNotEmpty(esField.autocompleteSubField()) && esField.type() == EsFieldType.TEXT){
+            Map<String, Object> autocomplete = new LinkedHashMap<>();
+            autocomplete.put("type", EsFieldType.TEXT.getName());
+            autocomplete.put("analyzer", AUTOCOMPLETE_ANALYZER);
+            autocomplete.put("search_analyzer", AUTOCOMPLETE_SEARCH_ANALYZER);
+            subFields.put(esField.autocompleteSubField(), autocomplete);
+        }
+        if (!subFields.isEmpty()){
+            mapping.put("fields", subFields);
+        }
+
+        return mapping;
+    }
+}
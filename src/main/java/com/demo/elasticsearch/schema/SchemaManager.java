@@ -0,0 +1,444 @@
+package com.demo.elasticsearch.schema;
+
+import com.demo.elasticsearch.annotation.EsDocument;
+import com.demo.elasticsearch.annotation.EsJoin;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 索引的settings和mappings管理, 来源有两个:
+ * 1. model包下带 @EsDocument 注解的类
+ * 2. classpath下的 mappings/{index}/{type}.json 和 mappings/{index}/_settings.json, 同一个type以json为准
+ * 启动时会把线上的mapping和声明的mapping做对比
+ */
+@Component
+@Slf4j
+public class SchemaManager {
+
+    private static final String SETTINGS_FILE = "_settings";
+
+    /**
+     * 和线上mapping对比时检查的属性
+     */
+    private static final String[] CHECKED_ATTRIBUTES = {"type", "index", "doc_values", "store", "analyzer", "format"};
+
+    @Autowired
+    private TransportClient client;
+
+    @Value("${elasticsearch.schema.base-package:com.demo.elasticsearch.model}")
+    private String basePackage;
+
+    @Value("${elasticsearch.schema.verify-on-startup:true}")
+    private boolean verifyOnStartup;
+
+    @Value("${elasticsearch.schema.fail-on-mismatch:false}")
+    private boolean failOnMismatch;
+
+    @Value("${elasticsearch.startup.connect-in-background:false}")
+    private boolean connectInBackground;
+
+    /**
+     * index -> settings
+     */
+    private final Map<String, Settings> settings = new LinkedHashMap<>();
+
+    /**
+     * index -> type -> mapping
+     */
+    private final Map<String, Map<String, Map<String, Object>>> mappings = new LinkedHashMap<>();
+
+    /**
+     * index -> type -> model
+     */
+    private final Map<String, Map<String, Class<?>>> models = new LinkedHashMap<>();
+
+    /**
+     * index -> type -> 路由字段
+     */
+    private final Map<String, Map<String, String>> routingFields = new LinkedHashMap<>();
+
+    /**
+     * index -> type -> 外键字段
+     */
+    private final Map<String, Map<String, List<JoinField>>> joins = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        loadAnnotatedModels();
+        loadJsonResources();
+        loadRoutingFields();
+        loadJoins();
+
+        for (Map.Entry<String, Map<String, Map<String, Object>>> entry : mappings.entrySet()) {
+            log.info("索引[{}]声明的type:{}", entry.getKey(), entry.getValue().keySet());
+        }
+    }
+
+    /**
+     * @return 所有声明过的索引
+     */
+    public Set<String> indices(){
+        return Collections.unmodifiableSet(mappings.keySet());
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @return 声明的settings
+     */
+    public Settings settings(String indexName){
+        return settings.getOrDefault(indexName, Settings.EMPTY);
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @return 声明的mappings, type -> json
+     */
+    public Map<String, String> mappingSources(String indexName){
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : mappings.getOrDefault(indexName, Collections.emptyMap()).entrySet()) {
+            try {
+                sources.put(entry.getKey(), XContentFactory.jsonBuilder()
+                        .map(Collections.singletonMap(entry.getKey(), entry.getValue()))
+                        .string());
+            } catch (IOException e){
+                throw new IllegalStateException("failed to serialize mapping of [" + indexName + "/" + entry.getKey() + "]", e);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @return 声明这个type的model, 只通过json声明的返回null
+     */
+    public Class<?> model(String indexName, String typeName){
+        return models.getOrDefault(indexName, Collections.emptyMap()).get(typeName);
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @return 声明的路由字段, 没有声明返回null
+     */
+    public String routingField(String indexName, String typeName){
+        return routingFields.getOrDefault(indexName, Collections.emptyMap()).get(typeName);
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @return 声明的外键字段, 没有返回空列表
+     */
+    public List<JoinField> joins(String indexName, String typeName){
+        return joins.getOrDefault(indexName, Collections.emptyMap()).getOrDefault(typeName, Collections.emptyList());
+    }
+
+    /**
+     * 一次查询涉及的所有type共同的路由字段
+     * @param indices 索引
+     * @param types 类型, 为空表示索引下所有声明过的type
+     * @return 所有type都声明了同一个路由字段时返回这个字段, 否则返回null
+     */
+    public String routingField(String[] indices, String[] types){
+        String common = null;
+        for (String indexName : indices) {
+            Collection<String> typeNames = types == null || types.length == 0
+                    ? mappings.getOrDefault(indexName, Collections.emptyMap()).keySet()
+                    : Arrays.asList(types);
+            if (typeNames.isEmpty()){
+                return null;
+            }
+            for (String typeName : typeNames) {
+                String field = routingField(indexName, typeName);
+                if (field == null || (common != null && !common.equals(field))){
+                    return null;
+                }
+                common = field;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * 按照声明的settings和mappings创建索引
+     * @param indexName 索引名称
+     * @return isAcknowledged
+     */
+    public boolean createIndex(String indexName){
+        if (!mappings.containsKey(indexName)){
+            throw new IllegalArgumentException("no schema declared for index [" + indexName + "]");
+        }
+        return ElasticsearchUtils.createIndex(indexName, settings(indexName), mappingSources(indexName));
+    }
+
+    /**
+     * 对比线上mapping和声明的mapping
+     * @param indexName 索引名称
+     * @return 不一致的地方, 一致返回空集合
+     */
+    public List<String> verify(String indexName){
+        List<String> mismatches = new ArrayList<>();
+
+        ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> response = client.admin().indices()
+                .prepareGetMappings(indexName)
+                .get()
+                .getMappings();
+
+        // indexName是别名时, 返回结果的key是真实索引名
+        ImmutableOpenMap<String, MappingMetaData> live = response.get(indexName);
+        if (live == null && response.size() == 1){
+            live = response.valuesIt().next();
+        }
+
+        for (Map.Entry<String, Map<String, Object>> entry : mappings.getOrDefault(indexName, Collections.emptyMap()).entrySet()) {
+            String typeName = entry.getKey();
+            MappingMetaData liveType = live == null ? null : live.get(typeName);
+            if (liveType == null){
+                mismatches.add(indexName + "/" + typeName + ": type is missing");
+                continue;
+            }
+
+            Map<String, Object> liveMapping;
+            try {
+                liveMapping = liveType.sourceAsMap();
+            } catch (IOException e){
+                throw new IllegalStateException("failed to parse mapping of [" + indexName + "/" + typeName + "]", e);
+            }
+
+            Map<String, Object> declared = entry.getValue();
+            if (!Objects.equals(String.valueOf(declared.get("dynamic")), String.valueOf(liveMapping.getOrDefault("dynamic", "true")))){
+                mismatches.add(indexName + "/" + typeName + ": dynamic declared [" + declared.get("dynamic") + "] but was [" + liveMapping.getOrDefault("dynamic", "true") + "]");
+            }
+            compareProperties(indexName + "/" + typeName, properties(declared), properties(liveMapping), mismatches);
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * 启动时检查线上mapping, 后台连接集群时由 StartupWarmer 在连接成功后检查
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup(){
+        if (verifyOnStartup && !connectInBackground){
+            verifyLiveMappings();
+        }
+    }
+
+    /**
+     * @return 是否在启动时检查线上mapping
+     */
+    public boolean isVerifyOnStartup(){
+        return verifyOnStartup;
+    }
+
+    /**
+     * 检查所有声明过的索引的线上mapping, 集群连不上时只打印警告
+     */
+    public void verifyLiveMappings(){
+        List<String> mismatches = new ArrayList<>();
+        for (String indexName : mappings.keySet()) {
+            try {
+                if (!ElasticsearchUtils.indexExist(indexName)){
+                    log.info("索引[{}]不存在, 跳过mapping检查", indexName);
+                    continue;
+                }
+                mismatches.addAll(verify(indexName));
+            } catch (Exception e){
+                log.warn("索引[{}]mapping检查失败:{}", indexName, e.getMessage());
+            }
+        }
+
+        for (String mismatch : mismatches) {
+            log.warn("mapping不一致 {}", mismatch);
+        }
+
+        if (failOnMismatch && !mismatches.isEmpty()){
+            throw new IllegalStateException("live mappings differ from declared mappings: " + mismatches);
+        }
+    }
+
+    private void loadAnnotatedModels(){
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(EsDocument.class));
+
+        for (BeanDefinition beanDefinition : scanner.findCandidateComponents(basePackage)) {
+            Class<?> clazz = ClassUtils.resolveClassName(beanDefinition.getBeanClassName(), ClassUtils.getDefaultClassLoader());
+            EsDocument document = clazz.getAnnotation(EsDocument.class);
+
+            mappings.computeIfAbsent(document.index(), k -> new LinkedHashMap<>()).put(document.type(), MappingBuilder.build(clazz));
+            models.computeIfAbsent(document.index(), k -> new LinkedHashMap<>()).put(document.type(), clazz);
+
+            Settings declared = Settings.builder()
+                    .put("index.number_of_shards", document.shards())
+                    .put("index.number_of_replicas", document.replicas())
+                    .build();
+            Settings existing = settings.putIfAbsent(document.index(), declared);
+            if (existing != null && !existing.equals(declared)){
+                log.warn("索引[{}]的多个model声明了不同的分片/副本数, 使用先加载的:{}", document.index(), existing.getAsMap());
+            }
+        }
+    }
+
+    /**
+     * 路由字段必须是keyword, 按这个字段查询时才是精确匹配, 才能只查一个分片
+     */
+    private void loadRoutingFields(){
+        for (Map.Entry<String, Map<String, Class<?>>> index : models.entrySet()) {
+            for (Map.Entry<String, Class<?>> type : index.getValue().entrySet()) {
+                String routing = type.getValue().getAnnotation(EsDocument.class).routing();
+                if (StringUtils.isEmpty(routing)){
+                    continue;
+                }
+
+                Map<String, Object> field = castMap(properties(mappings.get(index.getKey()).get(type.getKey())).get(routing));
+                if (field == null || !"keyword".equals(field.get("type"))){
+                    throw new IllegalStateException("routing field [" + routing + "] of [" + index.getKey() + "/" + type.getKey() + "] must be a keyword field");
+                }
+                routingFields.computeIfAbsent(index.getKey(), k -> new LinkedHashMap<>()).put(type.getKey(), routing);
+                log.info("索引[{}/{}]的路由字段:{}", index.getKey(), type.getKey(), routing);
+            }
+        }
+    }
+
+    /**
+     * 外键字段必须是keyword(值就是id), 被引用的type要在同一个索引下声明过, 并且不能有路由字段
+     */
+    private void loadJoins(){
+        for (Map.Entry<String, Map<String, Class<?>>> index : models.entrySet()) {
+            for (Map.Entry<String, Class<?>> type : index.getValue().entrySet()) {
+                for (Field field : type.getValue().getDeclaredFields()) {
+                    EsJoin join = field.getAnnotation(EsJoin.class);
+                    if (join == null){
+                        continue;
+                    }
+
+                    String name = MappingBuilder.fieldName(field);
+                    String path = index.getKey() + "/" + type.getKey() + "." + name;
+                    Map<String, Object> mapping = castMap(properties(mappings.get(index.getKey()).get(type.getKey())).get(name));
+                    if (mapping == null || !"keyword".equals(mapping.get("type"))){
+                        throw new IllegalStateException("join field [" + path + "] must be a keyword field");
+                    }
+                    if (!mappings.get(index.getKey()).containsKey(join.type())){
+                        throw new IllegalStateException("join field [" + path + "] references undeclared type [" + join.type() + "]");
+                    }
+                    if (routingField(index.getKey(), join.type()) != null){
+                        throw new IllegalStateException("join field [" + path + "] references routed type [" + join.type() + "], it can not be fetched by id");
+                    }
+
+                    joins.computeIfAbsent(index.getKey(), k -> new LinkedHashMap<>())
+                            .computeIfAbsent(type.getKey(), k -> new ArrayList<>())
+                            .add(new JoinField(name, index.getKey(), join.type(), join.as(), join.fields()));
+                    log.info("索引[{}]的外键字段[{}]关联到[{}]", index.getKey(), type.getKey() + "." + name, join.type());
+                }
+            }
+        }
+    }
+
+    private void loadJsonResources() throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+        for (Resource resource : resolver.getResources("classpath*:mappings/*/*.json")) {
+            // mappings/{index}/{type}.json, 上一级目录名就是索引名
+            String path = resource.getURL().getPath();
+            String directory = path.substring(0, path.lastIndexOf('/'));
+            String indexName = directory.substring(directory.lastIndexOf('/') + 1);
+            String name = StringUtils.removeEnd(resource.getFilename(), ".json");
+
+            String json;
+            try (InputStream in = resource.getInputStream()) {
+                json = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            }
+
+            if (SETTINGS_FILE.equals(name)){
+                settings.put(indexName, Settings.builder().put(settings(indexName)).loadFromSource(json).build());
+                continue;
+            }
+
+            Map<String, Object> mapping = XContentHelper.convertToMap(new BytesArray(json), true).v2();
+            // 允许json最外层带type名
+            if (mapping.size() == 1 && mapping.get(name) instanceof Map){
+                mapping = castMap(mapping.get(name));
+            }
+            mappings.computeIfAbsent(indexName, k -> new LinkedHashMap<>()).put(name, mapping);
+            log.info("从[{}]加载mapping {}/{}", resource.getDescription(), indexName, name);
+        }
+    }
+
+    private static void compareProperties(String path, Map<String, Object> declared, Map<String, Object> live, List<String> mismatches){
+        for (Map.Entry<String, Object> entry : declared.entrySet()) {
+            String fieldPath = path + "." + entry.getKey();
+            Map<String, Object> declaredField = castMap(entry.getValue());
+            Map<String, Object> liveField = castMap(live.get(entry.getKey()));
+
+            if (liveField == null){
+                mismatches.add(fieldPath + ": field is missing");
+                continue;
+            }
+
+            for (String attribute : CHECKED_ATTRIBUTES) {
+                if (declaredField.containsKey(attribute)
+                        && !String.valueOf(declaredField.get(attribute)).equals(String.valueOf(liveField.get(attribute)))){
+                    mismatches.add(fieldPath + ": " + attribute + " declared [" + declaredField.get(attribute) + "] but was [" + liveField.get(attribute) + "]");
+                }
+            }
+
+            if (declaredField.containsKey("properties")){
+                compareProperties(fieldPath, properties(declaredField), properties(liveField), mismatches);
+            }
+            if (declaredField.containsKey("fields")){
+                Map<String, Object> liveSubFields = castMap(liveField.get("fields"));
+                compareProperties(fieldPath, castMap(declaredField.get("fields")),
+                        liveSubFields == null ? Collections.emptyMap() : liveSubFields, mismatches);
+            }
+        }
+    }
+
+    private static Map<String, Object> properties(Map<String, Object> mapping){
+        Map<String, Object> properties = castMap(mapping.get("properties"));
+        return properties == null ? Collections.emptyMap() : properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value){
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+}
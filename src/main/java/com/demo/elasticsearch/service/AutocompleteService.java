@@ -0,0 +1,148 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.ClientExecutor;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import com.demo.elasticsearch.util.PrefixCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @date Create in 11:44 2026/10/19
+ * @Description 输入提示, 用法:
+ * <pre>
+ * autocompleteService.suggest("car_shop", "suggest", "宝");
+ * </pre>
+ * 1. 查询走completion suggester, 不像prefix查询那样在服务端展开词项
+ * 2. 短前缀(最热的那部分按键)缓存在本地字典树里, 过期后先返回旧值再在后台刷新
+ */
+@Service
+@Slf4j
+public class AutocompleteService {
+
+    /**
+     * 过期多少倍TTL之后不再返回旧值
+     */
+    private static final int MAX_STALE_TTLS = 10;
+
+    @Autowired
+    private ClientExecutor clientExecutor;
+
+    @Value("${elasticsearch.autocomplete.size:10}")
+    private int defaultSize;
+
+    /**
+     * 每个字段最多缓存的前缀数
+     */
+    @Value("${elasticsearch.autocomplete.cache.max-prefixes:10000}")
+    private int maxPrefixes;
+
+    /**
+     * 只缓存不超过这个长度的前缀, 更长的前缀命中率低, 直接查es
+     */
+    @Value("${elasticsearch.autocomplete.cache.max-prefix-length:4}")
+    private int maxPrefixLength;
+
+    @Value("${elasticsearch.autocomplete.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    /**
+     * 索引/字段 -> 前缀缓存
+     */
+    private final ConcurrentMap<String, PrefixCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 正在后台刷新的前缀, 同一个前缀只刷新一次
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param indexName 索引名称
+     * @param field completion类型的字段
+     * @param prefix 用户输入
+     * @return 提示词
+     */
+    public List<String> suggest(String indexName, String field, String prefix){
+        return suggest(indexName, field, prefix, defaultSize);
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @param field completion类型的字段
+     * @param prefix 用户输入
+     * @param size 返回条数
+     * @return 提示词
+     */
+    public List<String> suggest(String indexName, String field, String prefix, int size){
+        // completion字段的分析器会转小写, 缓存的key也用小写
+        String normalized = StringUtils.trimToEmpty(prefix).toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()){
+            return Collections.emptyList();
+        }
+        if (normalized.length() > maxPrefixLength || size != defaultSize){
+            return ElasticsearchUtils.suggestCompletion(indexName, field, normalized, size);
+        }
+
+        String key = indexName + "/" + field;
+        PrefixCache cache = caches.computeIfAbsent(key, k -> new PrefixCache(maxPrefixes));
+        long now = System.currentTimeMillis();
+        long ttl = TimeUnit.SECONDS.toMillis(ttlSeconds);
+
+        PrefixCache.Entry entry = cache.get(normalized);
+        if (entry != null && now - entry.getLoadedAt() <= ttl * MAX_STALE_TTLS){
+            if (now - entry.getLoadedAt() > ttl){
+                refreshAsync(cache, key, indexName, field, normalized);
+            }
+            return entry.getValues();
+        }
+
+        return load(cache, indexName, field, normalized);
+    }
+
+    /**
+     * 提示词有变化(比如新上架了车型)时调用, 清掉它所有前缀的缓存
+     * @param indexName 索引名称
+     * @param field completion类型的字段
+     * @param text 提示词
+     */
+    public void invalidate(String indexName, String field, String text){
+        PrefixCache cache = caches.get(indexName + "/" + field);
+        if (cache != null){
+            cache.invalidate(text.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private List<String> load(PrefixCache cache, String indexName, String field, String prefix){
+        // 取查询前的时间, 查询期间发生的失效会让这次结果作废
+        long loadedAt = System.currentTimeMillis();
+        List<String> values = Collections.unmodifiableList(ElasticsearchUtils.suggestCompletion(indexName, field, prefix, defaultSize));
+        cache.put(prefix, values, loadedAt);
+        return values;
+    }
+
+    private void refreshAsync(PrefixCache cache, String key, String indexName, String field, String prefix){
+        String refreshKey = key + "/" + prefix;
+        if (!refreshing.add(refreshKey)){
+            return;
+        }
+
+        clientExecutor.submit(() -> load(cache, indexName, field, prefix))
+                .whenComplete((values, e) -> {
+                    refreshing.remove(refreshKey);
+                    if (e != null){
+                        log.warn("刷新输入提示[{}]失败:{}", refreshKey, e.getMessage());
+                    }
+                });
+    }
+}
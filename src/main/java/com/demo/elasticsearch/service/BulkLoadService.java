@@ -0,0 +1,104 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.ConcurrencyLimiters;
+import com.demo.elasticsearch.client.PayloadGuard;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import com.demo.elasticsearch.util.IdGenerator;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author agent
+ * @date Create in 11:19 2026/10/19
+ * @Description 大批量导入, 用法:
+ * <pre>
+ * try (BulkLoadSession session = bulkLoadService.open("car_shop", "cars")) {
+ *     session.add(id, source);
+ * }
+ * </pre>
+ */
+@Service
+public class BulkLoadService {
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private ConcurrencyLimiters limiters;
+
+    @Autowired
+    private PayloadGuard payloadGuard;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private EnrichmentService enrichmentService;
+
+    @Autowired
+    private ResilientExecutor resilience;
+
+    /**
+     * 每批的条数
+     */
+    @Value("${elasticsearch.bulk-load.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 单个会话同时在途的bulk请求数, 所有会话还共享 elasticsearch.limiter.bulk 的自适应限制
+     */
+    @Value("${elasticsearch.bulk-load.concurrency:2}")
+    private int concurrency;
+
+    /**
+     * 进度打印间隔(秒)
+     */
+    @Value("${elasticsearch.bulk-load.report-interval-seconds:10}")
+    private long reportIntervalSeconds;
+
+    /**
+     * 导入完成后段合并的超时时间
+     */
+    @Value("${elasticsearch.bulk-load.merge-timeout:30m}")
+    private String mergeTimeout;
+
+    /**
+     * 导入完成后等待副本分配完成的超时时间, 超时 close() 抛出异常
+     */
+    @Value("${elasticsearch.bulk-load.health-timeout:10m}")
+    private String healthTimeout;
+
+    /**
+     * 打开一个导入会话, 索引不存在时先创建
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @return BulkLoadSession
+     */
+    public BulkLoadSession open(String indexName, String typeName){
+        return open(indexName, typeName, Settings.EMPTY);
+    }
+
+    /**
+     * 打开一个导入会话, 索引不存在时先创建
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param production 导入完成后的设置(副本数/刷新间隔/translog), 不传则沿用索引当前的设置
+     * @return BulkLoadSession
+     */
+    public BulkLoadSession open(String indexName, String typeName, Settings production){
+        if (!ElasticsearchUtils.indexExist(indexName)){
+            ElasticsearchUtils.createIndex(indexName);
+        }
+
+        return new BulkLoadSession(client, resilience, indexName, typeName, LoadingSettings.production(resilience, client, indexName, production),
+                batchSize, payloadGuard.getBulkMaxBytes(), concurrency, limiters.bulk(), idGenerator, reportIntervalSeconds,
+                TimeValue.parseTimeValue(mergeTimeout, "elasticsearch.bulk-load.merge-timeout"),
+                TimeValue.parseTimeValue(healthTimeout, "elasticsearch.bulk-load.health-timeout"),
+                enrichmentService.denormalizes(indexName, typeName) ? sources -> enrichmentService.denormalize(indexName, typeName, sources) : null);
+    }
+}
@@ -0,0 +1,243 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.AdaptiveLimiter;
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.util.BulkWriter;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import com.demo.elasticsearch.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author agent
+ * @date Create in 11:19 2026/10/19
+ * @Description 大批量导入会话, 打开时关闭刷新/副本并把translog改为异步, 关闭时段合并、恢复设置并等待副本分配完成
+ */
+@Slf4j
+public class BulkLoadSession implements Closeable {
+
+    private final Client client;
+
+    private final ResilientExecutor resilience;
+
+    private final String index;
+
+    private final String type;
+
+    /**
+     * 导入完成后要恢复的设置
+     */
+    private final Settings production;
+
+    private final BulkWriter writer;
+
+    private final IdGenerator idGenerator;
+
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * 写入时关联, 为null不关联
+     */
+    private final Consumer<List<Map<String, Object>>> denormalizer;
+
+    private final int batchSize;
+
+    /**
+     * 段合并的超时时间, 合并在请求返回前完成, 比普通的管理操作慢得多
+     */
+    private final TimeValue mergeTimeout;
+
+    /**
+     * 等待副本分配完成的超时时间
+     */
+    private final TimeValue healthTimeout;
+
+    /**
+     * 等待关联的一批数据, 攒够一批关联一次, 被引用的document一批只取一次
+     */
+    private final List<IndexRequest> pendingRequests = new ArrayList<>();
+
+    private final List<Map<String, Object>> pendingSources = new ArrayList<>();
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private boolean closed;
+
+    BulkLoadSession(Client client, ResilientExecutor resilience, String index, String type, Settings production, int batchSize, long batchBytes,
+                    int concurrency, AdaptiveLimiter limiter, IdGenerator idGenerator, long reportIntervalSeconds, TimeValue mergeTimeout,
+                    TimeValue healthTimeout, Consumer<List<Map<String, Object>>> denormalizer) {
+        this.client = client;
+        this.resilience = resilience;
+        this.index = index;
+        this.type = type;
+        this.production = production;
+        // 客户端生成的id以create方式写入, 重复的数据版本冲突, 不算失败
+        this.writer = new BulkWriter(client, batchSize, batchBytes, concurrency, limiter, true, resilience.timeout(Operation.BULK));
+        this.idGenerator = idGenerator;
+        this.denormalizer = denormalizer;
+        this.batchSize = batchSize;
+        this.mergeTimeout = mergeTimeout;
+        this.healthTimeout = healthTimeout;
+
+        resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareUpdateSettings(index)
+                .setSettings(LoadingSettings.LOADING)
+                .get(timeout));
+        log.info("索引[{}]进入导入模式, 导入完成后恢复为:{}", index, production.getAsMap());
+
+        this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bulk-load-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reporter.scheduleAtFixedRate(this::report, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 添加一个document, type声明了路由字段时用数据里这个字段的值作为routing
+     * @param id id, 为空时由 IdGenerator 生成
+     * @param xContentBuilder 数据
+     */
+    public void add(String id, XContentBuilder xContentBuilder){
+        if (denormalizer != null){
+            add(id, XContentHelper.convertToMap(xContentBuilder.bytes(), true).v2());
+            return;
+        }
+        writer.add(indexRequest(id, xContentBuilder.bytes())
+                .routing(ElasticsearchUtils.routingOf(index, type, xContentBuilder.bytes()))
+                .source(xContentBuilder));
+    }
+
+    /**
+     * 添加一个document, type声明了路由字段时用数据里这个字段的值作为routing
+     * @param id id, 为空时由 IdGenerator 生成
+     * @param source 数据
+     */
+    public void add(String id, Map<String, Object> source){
+        IndexRequest request = new IndexRequest(index, type, id).source(source);
+        if (id == null){
+            // 按关联之前的数据生成, 被引用的数据变化不影响按内容生成的id
+            generateId(request, request.source());
+        }
+        if (denormalizer == null){
+            writer.add(request.routing(ElasticsearchUtils.routingOf(index, type, source)));
+            return;
+        }
+
+        synchronized (pendingRequests) {
+            pendingRequests.add(request);
+            // 关联字段加在副本上, 不修改调用方的数据
+            pendingSources.add(new LinkedHashMap<>(source));
+            if (pendingRequests.size() >= batchSize){
+                flushPending();
+            }
+        }
+    }
+
+    /**
+     * 关联一批数据之后交给 BulkWriter
+     */
+    private void flushPending(){
+        synchronized (pendingRequests) {
+            if (pendingRequests.isEmpty()){
+                return;
+            }
+            denormalizer.accept(pendingSources);
+            for (int i = 0; i < pendingRequests.size(); i++) {
+                Map<String, Object> source = pendingSources.get(i);
+                writer.add(pendingRequests.get(i).source(source).routing(ElasticsearchUtils.routingOf(index, type, source)));
+            }
+            pendingRequests.clear();
+            pendingSources.clear();
+        }
+    }
+
+    private IndexRequest indexRequest(String id, BytesReference source){
+        IndexRequest request = new IndexRequest(index, type, id);
+        if (id == null){
+            generateId(request, source);
+        }
+        return request;
+    }
+
+    private void generateId(IndexRequest request, BytesReference source){
+        String generated = idGenerator.nextId(source);
+        if (generated != null){
+            request.id(generated).opType(IndexRequest.OpType.CREATE);
+        }
+    }
+
+    /**
+     * @return 已经成功写入的条数
+     */
+    public long getDocs(){
+        return writer.getDocs();
+    }
+
+    /**
+     * @return 平均写入速度
+     */
+    public long docsPerSecond(){
+        return writer.docsPerSecond();
+    }
+
+    /**
+     * 写完剩余数据 -> 段合并 -> 恢复设置 -> 刷新 -> 等待副本分配完成
+     * @throws IllegalStateException 有写入失败的数据, 或者超时没有分配完成
+     */
+    @Override
+    public synchronized void close(){
+        if (closed){
+            return;
+        }
+        closed = true;
+
+        try {
+            if (denormalizer != null){
+                flushPending();
+            }
+            writer.close();
+            report();
+
+            long mergeStart = System.currentTimeMillis();
+            resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareForceMerge(index)
+                    .setMaxNumSegments(1)
+                    .get(mergeTimeout));
+            log.info("索引[{}]段合并完成, 耗时[{}]ms", index, System.currentTimeMillis() - mergeStart);
+        } finally {
+            reporter.shutdownNow();
+            resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareUpdateSettings(index)
+                    .setSettings(production)
+                    .get(timeout));
+            resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareRefresh(index).get(timeout));
+        }
+
+        LoadingSettings.awaitAllocated(resilience, client, index, production, healthTimeout);
+
+        log.info("索引[{}]导入完成, 共[{}]条, 失败[{}]条, 总耗时[{}]ms", index, writer.getDocs(), writer.getFailures(), System.currentTimeMillis() - startMillis);
+
+        if (writer.getFailures() > 0){
+            throw new IllegalStateException("bulk load failed [" + writer.getFailures() + "] docs, first failure: " + writer.getFirstFailure());
+        }
+    }
+
+    private void report(){
+        log.info("索引[{}]导入进度: 已写入[{}]条, 速度[{}]条/秒", index, writer.getDocs(), writer.docsPerSecond());
+    }
+}
@@ -0,0 +1,114 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.model.ChangeEvent;
+import com.demo.elasticsearch.model.Checkpoint;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 一个变更流的读取器, poll() 读下一批, 处理完成之后 commit() 保存位置(至少一次)
+ * 只读写入时间早于 当前时间 - settleMillis 的document, 刷新间隔内还不可见的写入不会被跳过;
+ * 删除不会出现在变更流里
+ */
+@Slf4j
+public class ChangeFeed {
+
+    /**
+     * 按位置读取一批document
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+
+        /**
+         * @param after 上次读到的位置, 为空从头读
+         * @param upTo 只读写入时间不超过这个值的document
+         * @return 按 [processTime, _uid] 排好序的document
+         */
+        List<ChangeEvent> fetch(Checkpoint after, long upTo);
+    }
+
+    @Getter
+    private final String name;
+
+    private final CheckpointStore checkpointStore;
+
+    private final long settleMillis;
+
+    private final Fetcher fetcher;
+
+    /**
+     * 已经提交的位置
+     */
+    @Getter
+    private Checkpoint checkpoint;
+
+    /**
+     * 最近一次poll读到的位置, commit之后才生效
+     */
+    private Checkpoint pending;
+
+    public ChangeFeed(String name, CheckpointStore checkpointStore, long settleMillis, Fetcher fetcher) {
+        this.name = name;
+        this.checkpointStore = checkpointStore;
+        this.settleMillis = settleMillis;
+        this.fetcher = fetcher;
+        this.checkpoint = checkpointStore.load(name);
+    }
+
+    /**
+     * 从上次提交(或上次poll)的位置之后读一批
+     * @return 新增/更新的document, 没有返回空列表
+     */
+    public synchronized List<ChangeEvent> poll(){
+        List<ChangeEvent> events = fetcher.fetch(pending != null ? pending : checkpoint, System.currentTimeMillis() - settleMillis);
+        if (!events.isEmpty()){
+            ChangeEvent last = events.get(events.size() - 1);
+            pending = new Checkpoint(last.getProcessTime(), last.getType() + "#" + last.getId());
+        }
+        return events;
+    }
+
+    /**
+     * 保存最近一次poll的位置
+     */
+    public synchronized void commit(){
+        if (pending != null){
+            checkpointStore.save(name, pending);
+            checkpoint = pending;
+            pending = null;
+        }
+    }
+
+    /**
+     * 放弃没有提交的位置, 下次从上次提交的位置重新读
+     */
+    public synchronized void rollback(){
+        pending = null;
+    }
+
+    /**
+     * 读到没有新数据为止, 每批处理成功后提交, 处理失败回滚并抛出异常
+     * @param consumer 处理一批document
+     * @return 处理的条数
+     */
+    public long drain(Consumer<List<ChangeEvent>> consumer){
+        long total = 0;
+        for (List<ChangeEvent> events = poll(); !events.isEmpty(); events = poll()) {
+            try {
+                consumer.accept(events);
+            } catch (RuntimeException e){
+                rollback();
+                throw e;
+            }
+            commit();
+            total += events.size();
+        }
+        log.debug("变更流[{}]处理[{}]条, 位置{}", name, total, checkpoint == null ? null : checkpoint.getProcessTime() + "/" + checkpoint.getUid());
+        return total;
+    }
+}
@@ -0,0 +1,49 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 增量变更流, 按写入时间字段(processTime)读取新增/更新的document, 读取位置持久化在 CheckpointStore 里,
+ * 下游不用再全量扫描索引. 写入方需要在每次新增/修改时把写入时间字段设为当前时间
+ */
+@Service
+public class ChangeFeedService {
+
+    @Autowired
+    private CheckpointStore checkpointStore;
+
+    /**
+     * 写入时间字段(epoch_millis)
+     */
+    @Value("${elasticsearch.change-feed.time-field:processTime}")
+    private String timeField;
+
+    /**
+     * 每批条数
+     */
+    @Value("${elasticsearch.change-feed.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 写入之后多久才读(毫秒), 要大于索引的refresh_interval和写入方之间的时钟偏差
+     */
+    @Value("${elasticsearch.change-feed.settle-millis:2000}")
+    private long settleMillis;
+
+    /**
+     * 打开一个变更流, 从上次提交的位置继续
+     * @param feedName 变更流名称, 每个下游消费方一个
+     * @param indexes 索引
+     * @param types 类型
+     * @return 读取器
+     */
+    public ChangeFeed open(String feedName, String indexes, String types){
+        return new ChangeFeed(feedName, checkpointStore, settleMillis,
+                (after, upTo) -> ElasticsearchUtils.searchChanges(indexes, types, timeField, after, upTo, batchSize));
+    }
+}
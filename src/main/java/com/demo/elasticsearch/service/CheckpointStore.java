@@ -0,0 +1,23 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.model.Checkpoint;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 变更流读取位置的持久化
+ */
+public interface CheckpointStore {
+
+    /**
+     * @param feedName 变更流名称
+     * @return 保存的位置, 没有返回null
+     */
+    Checkpoint load(String feedName);
+
+    /**
+     * @param feedName 变更流名称
+     * @param checkpoint 位置
+     */
+    void save(String feedName, Checkpoint checkpoint);
+}
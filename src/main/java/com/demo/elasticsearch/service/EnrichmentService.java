@@ -0,0 +1,225 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.schema.JoinField;
+import com.demo.elasticsearch.schema.SchemaManager;
+import com.demo.elasticsearch.util.DocumentWriteListener;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import com.demo.elasticsearch.util.ReferenceCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @author agent
+ * @date Create in 12:15 2026/10/19
+ * @Description 按 @EsJoin 外键关联被引用的document, 例如销售记录关联汽车和店铺:
+ * 1. 读取时关联(enrich): 收集一页结果里所有的外键, 先查本地LRU缓存, 没有缓存的用一次multi-get全部取回,
+ *    一页结果最多一次往返, 不再每条结果单独get(N+1)
+ * 2. 写入时关联(denormalize): 导入时把被引用document的字段直接写进来, 读取时不需要再关联,
+ *    代价是被引用的数据修改后已经写入的副本不会更新; 已经带有关联字段的结果读取时会跳过
+ * 本应用写入/删除被引用的document时失效对应的缓存, 其他途径的修改由缓存有效期兜底
+ */
+@Service
+@Slf4j
+public class EnrichmentService implements DocumentWriteListener {
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 最多缓存的被引用document条数
+     */
+    @Value("${elasticsearch.enrichment.cache.max-entries:10000}")
+    private int maxEntries;
+
+    /**
+     * 缓存有效期(秒), 0 不过期
+     */
+    @Value("${elasticsearch.enrichment.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    /**
+     * 导入(BulkLoadSession)时把被引用document的字段写进来
+     */
+    @Value("${elasticsearch.enrichment.denormalize-on-write:false}")
+    private boolean denormalizeOnWrite;
+
+    private ReferenceCache cache;
+
+    /**
+     * index/type -> 要取的字段, 所有引用这个type的外键声明的字段合在一起, null表示取全部
+     */
+    private final Map<String, String[]> referencedFields = new HashMap<>();
+
+    @PostConstruct
+    public void init(){
+        cache = new ReferenceCache(maxEntries, ttlSeconds * 1000);
+
+        Map<String, Set<String>> fields = new HashMap<>();
+        for (String indexName : schemaManager.indices()) {
+            for (String typeName : schemaManager.mappingSources(indexName).keySet()) {
+                for (JoinField join : schemaManager.joins(indexName, typeName)) {
+                    String key = join.getIndex() + "/" + join.getType();
+                    Set<String> names = fields.containsKey(key) ? fields.get(key) : new TreeSet<>();
+                    // 有一个外键要取全部字段, 这个type就取全部
+                    if (names != null && join.getFields().length > 0){
+                        names.addAll(Arrays.asList(join.getFields()));
+                    } else {
+                        names = null;
+                    }
+                    fields.put(key, names);
+                }
+            }
+        }
+        fields.forEach((key, names) -> referencedFields.put(key, names == null ? null : names.toArray(new String[0])));
+        log.info("被引用的type和字段:{}", fields);
+
+        if (meterRegistry != null){
+            Gauge.builder("elasticsearch.enrichment.cache.size", cache, ReferenceCache::size).register(meterRegistry);
+            FunctionCounter.builder("elasticsearch.enrichment.cache.requests", cache, ReferenceCache::getHits).tag("result", "hit").register(meterRegistry);
+            FunctionCounter.builder("elasticsearch.enrichment.cache.requests", cache, ReferenceCache::getMisses).tag("result", "miss").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 读取时关联, 把被引用的document放到每条结果的 @EsJoin(as) 字段下
+     * @param indexName 结果所在的索引
+     * @param typeName 结果的类型
+     * @param sources 一页结果(searchDocument返回的列表), 直接在上面修改
+     * @return sources
+     */
+    public List<Map<String, Object>> enrich(String indexName, String typeName, List<Map<String, Object>> sources){
+        List<JoinField> joins = schemaManager.joins(indexName, typeName);
+        if (joins.isEmpty() || sources.isEmpty()){
+            return sources;
+        }
+
+        Map<String, Map<String, Object>> resolved = resolve(joins, sources);
+        for (Map<String, Object> source : sources) {
+            for (JoinField join : joins) {
+                Object id = source.get(join.getField());
+                if (id == null || source.containsKey(join.getAs())){
+                    continue;
+                }
+                Map<String, Object> reference = resolved.get(ReferenceCache.key(join.getIndex(), join.getType(), id.toString()));
+                if (reference != null && reference != ReferenceCache.MISSING){
+                    source.put(join.getAs(), new LinkedHashMap<>(reference));
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * 写入时关联, 和读取时关联相同, 关联字段随document一起写入
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param sources 一批要写入的数据
+     */
+    public void denormalize(String indexName, String typeName, List<Map<String, Object>> sources){
+        enrich(indexName, typeName, sources);
+    }
+
+    /**
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @return 开启了写入时关联并且这个type声明了外键
+     */
+    public boolean denormalizes(String indexName, String typeName){
+        return denormalizeOnWrite && !schemaManager.joins(indexName, typeName).isEmpty();
+    }
+
+    public ReferenceCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void onIndexed(String indexName, String typeName, String id, BytesReference source) {
+        cache.invalidate(ReferenceCache.key(indexName, typeName, id));
+    }
+
+    @Override
+    public void onDeleted(String indexName, String typeName, String id) {
+        cache.invalidate(ReferenceCache.key(indexName, typeName, id));
+    }
+
+    /**
+     * 先查缓存, 没有缓存的所有外键(不管引用哪个type)合成一个multi-get
+     * @return index/type/id -> 字段
+     */
+    private Map<String, Map<String, Object>> resolve(List<JoinField> joins, List<Map<String, Object>> sources){
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> resolved = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        MultiGetRequest request = new MultiGetRequest();
+
+        for (JoinField join : joins) {
+            String[] fields = referencedFields.get(join.getIndex() + "/" + join.getType());
+            FetchSourceContext fetchSource = fields == null ? FetchSourceContext.FETCH_SOURCE : new FetchSourceContext(true, fields, Strings.EMPTY_ARRAY);
+            for (Map<String, Object> source : sources) {
+                Object id = source.get(join.getField());
+                if (id == null || source.containsKey(join.getAs())){
+                    continue;
+                }
+                String key = ReferenceCache.key(join.getIndex(), join.getType(), id.toString());
+                if (resolved.containsKey(key) || missing.contains(key)){
+                    continue;
+                }
+                Map<String, Object> cached = cache.get(key, now);
+                if (cached != null){
+                    resolved.put(key, cached);
+                } else {
+                    missing.add(key);
+                    request.add(new MultiGetRequest.Item(join.getIndex(), join.getType(), id.toString()).fetchSourceContext(fetchSource));
+                }
+            }
+        }
+
+        if (missing.isEmpty()){
+            return resolved;
+        }
+
+        // 响应和请求顺序一致, 按位置对应请求时的key; 响应里的index是实际的索引名, 索引迁移之后和别名不同
+        MultiGetResponse response = ElasticsearchUtils.multiGet(request);
+        Iterator<String> keys = missing.iterator();
+        for (MultiGetItemResponse item : response.getResponses()) {
+            String key = keys.next();
+            if (item.isFailed()){
+                // 失败的不缓存, 下一次再取
+                log.warn("获取被引用的document[{}]失败:{}", key, item.getFailure().getMessage());
+                continue;
+            }
+            Map<String, Object> reference = item.getResponse().isExists() && item.getResponse().getSourceAsMap() != null
+                    ? item.getResponse().getSourceAsMap()
+                    : ReferenceCache.MISSING;
+            cache.put(key, reference, now);
+            resolved.put(key, reference);
+        }
+        log.debug("关联[{}]条结果, multi-get取了[{}]个被引用的document", sources.size(), missing.size());
+        return resolved;
+    }
+}
@@ -0,0 +1,165 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.ClusterUnavailableException;
+import com.demo.elasticsearch.client.FederatedClusters;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.model.FederatedSearchResult;
+import com.demo.elasticsearch.util.SearchMerger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author agent
+ * @date Create in 12:11 2026/10/19
+ * @Description 联邦查询: 同一个查询同时发给多个集群(每个区域一个), 合并各集群的前N条、命中数和聚合
+ * 请求全部先发出去再等结果, 总耗时取决于最慢的集群而不是各集群之和; 每个集群有自己的超时时间,
+ * 超时/熔断/出错的集群不等待, 记在结果的 failures 里, 返回其他集群的数据
+ */
+@Service
+@Slf4j
+public class FederatedSearchService {
+
+    /**
+     * es默认每页条数
+     */
+    private static final int DEFAULT_SIZE = 10;
+
+    @Autowired
+    private FederatedClusters clusters;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 查询所有集群
+     * @param indexes 索引, 逗号分隔, 每个集群里的索引名相同
+     * @param types 类型, 逗号分隔
+     * @param source 查询条件, from/size 是合并后的分页
+     * @return 合并结果
+     */
+    public FederatedSearchResult search(String indexes, String types, SearchSourceBuilder source){
+        return search(indexes, types, source, clusters.names());
+    }
+
+    /**
+     * 查询指定的集群
+     * 每个集群要返回自己的前 from + size 条才能合并出正确的一页, 发出的是 from=0, size=from + size 的副本, 传入的 source 不变
+     * @param indexes 索引, 逗号分隔, 每个集群里的索引名相同
+     * @param types 类型, 逗号分隔
+     * @param source 查询条件, from/size 是合并后的分页
+     * @param clusterNames 集群名
+     * @return 合并结果
+     * @throws ClusterUnavailableException 所有集群都没有返回结果
+     */
+    public FederatedSearchResult search(String indexes, String types, SearchSourceBuilder source, Collection<String> clusterNames){
+        int from = Math.max(source.from(), 0);
+        int size = source.size() < 0 ? DEFAULT_SIZE : source.size();
+        SearchSourceBuilder window = source.copyWithNewSlice(source.slice()).from(0).size(from + size);
+
+        SearchRequest request = new SearchRequest(StringUtils.split(indexes, ',')).source(window);
+        if (StringUtils.isNotEmpty(types)){
+            request.types(StringUtils.split(types, ','));
+        }
+
+        Map<String, String> failures = new LinkedHashMap<>();
+        Map<String, CompletableFuture<SearchResponse>> pending = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        for (String name : clusterNames) {
+            FederatedClusters.Cluster cluster = clusters.get(name);
+            if (cluster == null){
+                failures.put(name, "没有配置这个集群");
+            } else if (!cluster.getBreaker().allowRequest()){
+                failures.put(name, "熔断中");
+            } else {
+                CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+                cluster.getClient().search(request, ActionListener.wrap(future::complete, future::completeExceptionally));
+                pending.put(name, future);
+            }
+        }
+
+        Map<String, SearchResponse> responses = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<SearchResponse>> entry : pending.entrySet()) {
+            FederatedClusters.Cluster cluster = clusters.get(entry.getKey());
+            long remainingMillis = cluster.getTimeout().millis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            try {
+                responses.put(entry.getKey(), entry.getValue().get(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS));
+                cluster.getBreaker().onSuccess();
+                record(entry.getKey(), "success", start);
+            } catch (TimeoutException e){
+                cluster.getBreaker().onFailure();
+                failures.put(entry.getKey(), "超时(" + cluster.getTimeout() + ")");
+                record(entry.getKey(), "timeout", start);
+            } catch (ExecutionException e){
+                // 和 ResilientExecutor 相同: 只有集群层面的失败计入熔断, 查询写错了(4xx)说明集群是正常的
+                if (ResilientExecutor.isInfrastructureFailure(e.getCause())){
+                    cluster.getBreaker().onFailure();
+                } else if (ResilientExecutor.isElasticsearchFailure(e.getCause())){
+                    cluster.getBreaker().onSuccess();
+                } else {
+                    cluster.getBreaker().onIgnored();
+                }
+                failures.put(entry.getKey(), ExceptionsHelper.unwrapCause(e.getCause()).toString());
+                record(entry.getKey(), "error", start);
+            } catch (InterruptedException e){
+                // 没有结果, 也要结束熔断器的探测请求, 否则半开状态一直拒绝这个集群
+                cluster.getBreaker().onIgnored();
+                Thread.currentThread().interrupt();
+                failures.put(entry.getKey(), "interrupted");
+            }
+        }
+
+        if (!failures.isEmpty()){
+            log.warn("联邦查询部分集群没有返回结果:{}", failures);
+        }
+        if (responses.isEmpty()){
+            throw new ClusterUnavailableException("联邦查询所有集群都没有返回结果:" + failures);
+        }
+        return SearchMerger.merge(responses, sortOrders(source), from, size, failures);
+    }
+
+    /**
+     * @return 排序字段的方向, 没有排序字段返回空列表(按分数)
+     */
+    private static List<SortOrder> sortOrders(SearchSourceBuilder source){
+        if (source.sorts() == null){
+            return Collections.emptyList();
+        }
+        List<SortOrder> sortOrders = new ArrayList<>();
+        for (SortBuilder<?> sort : source.sorts()) {
+            sortOrders.add(sort.order());
+        }
+        return sortOrders;
+    }
+
+    private void record(String cluster, String outcome, long start){
+        if (meterRegistry != null){
+            Timer.builder("elasticsearch.federation.search")
+                    .tag("cluster", cluster)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.model.Checkpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 保存在本地文件里的读取位置, 每个变更流一个文件 {dir}/{feedName}.checkpoint,
+ * 先写临时文件再原子替换, 进程在写入时崩溃也不会留下半个文件
+ */
+@Component
+public class FileCheckpointStore implements CheckpointStore {
+
+    private final Path directory;
+
+    public FileCheckpointStore(@Value("${elasticsearch.change-feed.checkpoint-dir:checkpoints}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @Override
+    public Checkpoint load(String feedName){
+        Path file = file(feedName);
+        if (!Files.exists(file)){
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            return new Checkpoint(Long.parseLong(lines.get(0).trim()), lines.get(1));
+        } catch (IOException e){
+            throw new UncheckedIOException("failed to read checkpoint " + file, e);
+        }
+    }
+
+    @Override
+    public void save(String feedName, Checkpoint checkpoint){
+        Path file = file(feedName);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, feedName, ".tmp");
+            Files.write(temp, (checkpoint.getProcessTime() + "\n" + checkpoint.getUid()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            throw new UncheckedIOException("failed to write checkpoint " + file, e);
+        }
+    }
+
+    private Path file(String feedName){
+        return directory.resolve(feedName + ".checkpoint");
+    }
+}
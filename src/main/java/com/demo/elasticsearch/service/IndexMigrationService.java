@@ -0,0 +1,344 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.ClusterStateCache;
+import com.demo.elasticsearch.client.ConcurrencyLimiters;
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.PayloadGuard;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.schema.SchemaManager;
+import com.demo.elasticsearch.util.BulkWriter;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author agent
+ * @date Create in 11:17 2026/10/19
+ * @Description 索引迁移(reindex), 新建带版本号的索引 -> 分片并行scroll拷贝数据 -> 追增量 -> 原子切换别名, 整个过程中别名一直可以搜索
+ * 第一次迁移同名的真实索引时, 切换别名会删除旧索引, 切换之后不能再追增量: 最后一轮追增量前旧索引设为只读,
+ * 从这时到切换完成之间的写入会失败(index.blocks.write), 不会被悄悄丢掉
+ */
+@Service
+@Slf4j
+public class IndexMigrationService {
+
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private ConcurrencyLimiters limiters;
+
+    @Autowired
+    private PayloadGuard payloadGuard;
+
+    @Autowired
+    private ClusterStateCache clusterStateCache;
+
+    @Autowired
+    private ResilientExecutor resilience;
+
+    /**
+     * 并行scroll的分片数
+     */
+    @Value("${elasticsearch.migration.slices:4}")
+    private int slices;
+
+    /**
+     * 每次scroll/bulk的条数
+     */
+    @Value("${elasticsearch.migration.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 同时在途的bulk请求数
+     */
+    @Value("${elasticsearch.migration.bulk-concurrency:2}")
+    private int bulkConcurrency;
+
+    /**
+     * 追增量的最大轮数
+     */
+    @Value("${elasticsearch.migration.max-catch-up-rounds:5}")
+    private int maxCatchUpRounds;
+
+    /**
+     * 时间戳字段的安全余量(毫秒), 防止写入时间和可见时间之间的数据被漏掉
+     */
+    @Value("${elasticsearch.migration.catch-up-margin-millis:5000}")
+    private long catchUpMarginMillis;
+
+    /**
+     * 切换别名前等待新索引副本分配完成的超时时间, 超时放弃迁移, 别名仍指向旧索引
+     */
+    @Value("${elasticsearch.migration.health-timeout:10m}")
+    private String healthTimeout;
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    /**
+     * 按照 SchemaManager 里声明的settings和mappings迁移
+     * @param alias 业务使用的别名, 同时也是声明mapping时的索引名
+     * @param timestampField 记录写入时间的字段(epoch_millis), 用来追拷贝期间的增量, 为空则不追增量
+     * @return 新索引名称
+     */
+    public String migrate(String alias, String timestampField){
+        return migrate(alias, schemaManager.settings(alias), schemaManager.mappingSources(alias), timestampField);
+    }
+
+    /**
+     * 迁移别名指向的索引到一个新的版本化索引
+     * @param alias 业务使用的别名, 第一次迁移时可以是同名的真实索引
+     * @param settings 新索引的settings(number_of_replicas/refresh_interval 为生产环境的值)
+     * @param mappings 新索引的mappings, type -> json
+     * @param timestampField 记录写入时间的字段(epoch_millis), 用来追拷贝期间的增量, 为空则不追增量
+     * @return 新索引名称
+     */
+    public String migrate(String alias, Settings settings, Map<String, String> mappings, String timestampField){
+        String sourceIndex = resolveIndex(alias);
+        if (sourceIndex == null){
+            throw new IllegalStateException("alias or index [" + alias + "] does not exist");
+        }
+
+        String targetIndex = alias + "_v" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        log.info("开始迁移 [{}] -> [{}], 别名[{}]", sourceIndex, targetIndex, alias);
+
+        // 生产环境的设置, 拷贝完成之后恢复
+        Settings production = LoadingSettings.production(resilience, client, sourceIndex, settings);
+
+        createLoadingIndex(targetIndex, settings, mappings);
+
+        long copyStart = System.currentTimeMillis();
+        long copied = copy(alias, sourceIndex, targetIndex, QueryBuilders.matchAllQuery(), slices);
+        log.info("全量拷贝完成, 共[{}]条, 耗时[{}]ms", copied, System.currentTimeMillis() - copyStart);
+
+        // 追增量, 直到一轮的增量足够小
+        long since = copyStart - catchUpMarginMillis;
+        if (StringUtils.isNotEmpty(timestampField)){
+            for (int round = 0; round < maxCatchUpRounds; round++) {
+                long roundStart = System.currentTimeMillis();
+                long delta = copy(alias, sourceIndex, targetIndex, QueryBuilders.rangeQuery(timestampField).format("epoch_millis").gte(since), 1);
+                log.info("第[{}]轮追增量, [{}]条", round + 1, delta);
+                since = roundStart - catchUpMarginMillis;
+                if (delta < batchSize){
+                    break;
+                }
+            }
+        } else {
+            log.warn("没有指定时间戳字段, 拷贝期间的写入不会被追加到新索引");
+        }
+
+        // 恢复生产环境设置, 等副本分配完成再切别名; 超时直接抛出异常, 不切换别名, 新索引保留下来排查
+        resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareUpdateSettings(targetIndex)
+                .setSettings(production)
+                .get(timeout));
+        resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareRefresh(targetIndex).get(timeout));
+        LoadingSettings.awaitAllocated(resilience, client, targetIndex, production,
+                TimeValue.parseTimeValue(healthTimeout, "elasticsearch.migration.health-timeout"));
+
+        boolean replacesIndex = alias.equals(sourceIndex);
+        if (replacesIndex){
+            writeBlock(sourceIndex, true);
+        }
+        try {
+            if (StringUtils.isNotEmpty(timestampField)){
+                long roundStart = System.currentTimeMillis();
+                copy(alias, sourceIndex, targetIndex, QueryBuilders.rangeQuery(timestampField).format("epoch_millis").gte(since), 1);
+                since = roundStart - catchUpMarginMillis;
+            }
+
+            swapAlias(alias, sourceIndex, targetIndex);
+        } catch (RuntimeException e){
+            if (replacesIndex){
+                writeBlock(sourceIndex, false);
+            }
+            throw e;
+        }
+
+        // 切换前一刻写进旧索引的数据; 切换后已经通过别名修改过的document版本号更大, 拷贝时版本冲突被跳过
+        // 例外: 追增量之后才在旧索引创建并且修改过(版本号大于1)、切换后又通过别名重新写入的同一个id,
+        // 新索引里的版本号从1开始, 会被旧数据覆盖
+        if (StringUtils.isNotEmpty(timestampField) && !replacesIndex){
+            copy(alias, sourceIndex, targetIndex, QueryBuilders.rangeQuery(timestampField).format("epoch_millis").gte(since), 1);
+        }
+
+        log.info("迁移完成, 别名[{}]已指向[{}]", alias, targetIndex);
+        return targetIndex;
+    }
+
+    /**
+     * 找到别名当前指向的索引
+     * @param alias 别名或索引名
+     * @return 索引名, 不存在返回null
+     */
+    public String resolveIndex(String alias){
+        GetAliasesResponse response = resilience.execute(Operation.ADMIN_READ, timeout -> client.admin().indices().prepareGetAliases(alias).get(timeout));
+        if (!response.getAliases().isEmpty()){
+            if (response.getAliases().size() > 1){
+                throw new IllegalStateException("alias [" + alias + "] points to more than one index");
+            }
+            return response.getAliases().keysIt().next();
+        }
+
+        boolean exists = resilience.execute(Operation.ADMIN_READ, timeout -> client.admin().indices().prepareExists(alias).get(timeout)).isExists();
+        return exists ? alias : null;
+    }
+
+    /**
+     * 创建新索引, 导入期间关闭刷新, 副本数为0
+     */
+    private void createLoadingIndex(String index, Settings settings, Map<String, String> mappings){
+        Settings loading = Settings.builder()
+                .put(settings)
+                .put(LoadingSettings.LOADING)
+                .build();
+
+        CreateIndexRequestBuilder builder = client.admin().indices().prepareCreate(index).setSettings(loading);
+        if (mappings != null){
+            for (Map.Entry<String, String> entry : mappings.entrySet()) {
+                builder.addMapping(entry.getKey(), entry.getValue());
+            }
+        }
+        resilience.execute(Operation.ADMIN_WRITE, builder::get);
+        clusterStateCache.invalidate();
+    }
+
+    /**
+     * 拷贝数据, 每个分片一个scroll并行执行
+     * @param alias 声明mapping时的索引名, 旧数据没有routing时按这个索引声明的路由字段重新计算
+     * @return 拷贝条数
+     */
+    private long copy(String alias, String sourceIndex, String targetIndex, QueryBuilder query, int sliceCount){
+        BulkWriter writer = new BulkWriter(client, batchSize, payloadGuard.getBulkMaxBytes(), bulkConcurrency, limiters.bulk(), true,
+                resilience.timeout(Operation.BULK));
+
+        if (sliceCount <= 1){
+            scrollSlice(alias, sourceIndex, targetIndex, query, null, writer);
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(sliceCount);
+            try {
+                List<Future<?>> futures = new ArrayList<>(sliceCount);
+                for (int i = 0; i < sliceCount; i++) {
+                    SliceBuilder slice = new SliceBuilder(i, sliceCount);
+                    futures.add(executor.submit(() -> scrollSlice(alias, sourceIndex, targetIndex, query, slice, writer)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("migration interrupted", e);
+            } catch (ExecutionException e){
+                throw new IllegalStateException("migration slice failed", e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        writer.close();
+        if (writer.getFailures() > 0){
+            throw new IllegalStateException("migration bulk failed [" + writer.getFailures() + "] docs, first failure: " + writer.getFirstFailure());
+        }
+        return writer.getDocs();
+    }
+
+    private void scrollSlice(String alias, String sourceIndex, String targetIndex, QueryBuilder query, SliceBuilder slice, BulkWriter writer){
+        SearchRequestBuilder searchRequestBuilder = client.prepareSearch(sourceIndex)
+                .setQuery(query)
+                .setScroll(SCROLL_KEEP_ALIVE)
+                .setSize(batchSize)
+                .setVersion(true)
+                .addSort("_doc", SortOrder.ASC);
+        if (slice != null){
+            searchRequestBuilder.slice(slice);
+        }
+
+        SearchResponse response = resilience.execute(Operation.SEARCH, searchRequestBuilder::get);
+        try {
+            while (response.getHits().getHits().length > 0){
+                for (SearchHit hit : response.getHits().getHits()) {
+                    // 外部版本号(严格大于才写入): 目标索引没有这条document时直接创建, 已有的版本号相同或更新时是版本冲突,
+                    // writer忽略冲突跳过这条; 重复拷贝不会重写, 切换后通过别名写入的document(版本号+1)也不会被旧数据覆盖
+                    IndexRequest indexRequest = new IndexRequest(targetIndex, hit.getType(), hit.getId())
+                            .source(hit.getSourceRef())
+                            .version(hit.getVersion())
+                            .versionType(VersionType.EXTERNAL);
+
+                    SearchHitField routing = hit.field("_routing");
+                    if (routing != null){
+                        indexRequest.routing(routing.getValue());
+                    } else {
+                        // 新声明了路由字段的type, 迁移时按字段值重新分布到分片上
+                        indexRequest.routing(ElasticsearchUtils.routingOf(alias, hit.getType(), hit.getSourceRef()));
+                    }
+                    writer.add(indexRequest);
+                }
+
+                // 继续scroll不重试: 超时的请求可能已经在集群上执行, 重试会跳过一页
+                response = client.prepareSearchScroll(response.getScrollId())
+                        .setScroll(SCROLL_KEEP_ALIVE)
+                        .get(resilience.timeout(Operation.SEARCH));
+            }
+        } finally {
+            String scrollId = response.getScrollId();
+            resilience.execute(Operation.SEARCH, timeout -> client.prepareClearScroll().addScrollId(scrollId).get(timeout));
+        }
+    }
+
+    /**
+     * 禁止/恢复写入, 查询不受影响
+     */
+    private void writeBlock(String index, boolean blocked){
+        resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin().indices().prepareUpdateSettings(index)
+                .setSettings(Settings.builder().put(IndexMetaData.SETTING_BLOCKS_WRITE, blocked))
+                .get(timeout));
+        log.info("索引[{}]{}", index, blocked ? "禁止写入" : "恢复写入");
+    }
+
+    /**
+     * 原子切换别名, 第一次迁移时同名的真实索引会在同一个请求里被删除
+     */
+    private void swapAlias(String alias, String sourceIndex, String targetIndex){
+        IndicesAliasesRequestBuilder builder = client.admin().indices().prepareAliases();
+        if (alias.equals(sourceIndex)){
+            log.warn("[{}] 是真实索引, 切换别名时会被删除", alias);
+            builder.removeIndex(sourceIndex);
+        } else {
+            builder.removeAlias(sourceIndex, alias);
+        }
+        resilience.execute(Operation.ADMIN_WRITE, builder.addAlias(targetIndex, alias)::get);
+        clusterStateCache.invalidate();
+    }
+}
@@ -0,0 +1,82 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * @author agent
+ * @date Create in 11:19 2026/10/19
+ * @Description 大批量导入期间使用的索引设置, 以及导入完成后要恢复的生产环境设置
+ */
+final class LoadingSettings {
+
+    static final String REPLICAS = "index.number_of_replicas";
+
+    static final String REFRESH_INTERVAL = "index.refresh_interval";
+
+    static final String TRANSLOG_DURABILITY = "index.translog.durability";
+
+    /**
+     * 导入期间: 不刷新, 不写副本, translog异步刷盘
+     */
+    static final Settings LOADING = Settings.builder()
+            .put(REPLICAS, 0)
+            .put(REFRESH_INTERVAL, "-1")
+            .put(TRANSLOG_DURABILITY, "async")
+            .build();
+
+    private LoadingSettings() {
+    }
+
+    /**
+     * 读取索引当前的设置, 作为导入完成后要恢复的值
+     * @param resilience 超时/重试/熔断
+     * @param client client
+     * @param index 索引
+     * @param overrides 优先使用的值
+     * @return 生产环境设置
+     */
+    static Settings production(ResilientExecutor resilience, Client client, String index, Settings overrides){
+        Settings current = resilience.execute(Operation.ADMIN_READ, timeout -> client.admin().indices().prepareGetSettings(index).get(timeout))
+                .getIndexToSettings().get(index);
+        if (current == null){
+            current = Settings.EMPTY;
+        }
+
+        return Settings.builder()
+                .put(REPLICAS, overrides.get(REPLICAS, current.get(REPLICAS, "1")))
+                .put(REFRESH_INTERVAL, overrides.get(REFRESH_INTERVAL, current.get(REFRESH_INTERVAL, "1s")))
+                .put(TRANSLOG_DURABILITY, overrides.get(TRANSLOG_DURABILITY, current.get(TRANSLOG_DURABILITY, "request")))
+                .build();
+    }
+
+    /**
+     * 恢复生产环境设置之后等待分片分配完成: 副本数小于数据节点数时等待 green,
+     * 否则副本不可能全部分配(例如单节点的开发环境), 只等待 yellow
+     * @param resilience 超时/重试/熔断
+     * @param client client
+     * @param index 索引
+     * @param production 生产环境设置
+     * @param timeout 最长等待时间
+     * @throws IllegalStateException 超时没有达到要求的状态
+     */
+    static void awaitAllocated(ResilientExecutor resilience, Client client, String index, Settings production, TimeValue timeout){
+        int dataNodes = resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareHealth(index).get(t)).getNumberOfDataNodes();
+        ClusterHealthStatus expected = production.getAsInt(REPLICAS, 1) < dataNodes ? ClusterHealthStatus.GREEN : ClusterHealthStatus.YELLOW;
+
+        // 集群端最多等待 timeout, 客户端再多等一个管理操作的超时时间
+        ClusterHealthResponse response = resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareHealth(index)
+                .setWaitForStatus(expected)
+                .setTimeout(timeout)
+                .get(TimeValue.timeValueMillis(timeout.millis() + t.millis())));
+        if (response.isTimedOut()){
+            throw new IllegalStateException("index [" + index + "] did not reach " + expected + " within " + timeout
+                    + ", current status " + response.getStatus());
+        }
+    }
+}
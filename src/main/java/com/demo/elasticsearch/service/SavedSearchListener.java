@@ -0,0 +1,17 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.model.SavedSearchMatch;
+
+/**
+ * @author agent
+ * @date Create in 11:47 2026/10/19
+ * @Description 保存的搜索命中新写入的document时的回调, 注册为spring bean即可生效
+ * 在后台线程上执行, 需要排队/推送时在实现里把结果放进自己的队列
+ */
+public interface SavedSearchListener {
+
+    /**
+     * @param match 命中结果
+     */
+    void onMatch(SavedSearchMatch match);
+}
@@ -0,0 +1,312 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.model.SavedSearchMatch;
+import com.demo.elasticsearch.schema.SchemaManager;
+import com.demo.elasticsearch.util.DocumentWriteListener;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.percolator.PercolateQueryBuilder;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * @author agent
+ * @date Create in 11:47 2026/10/19
+ * @Description 保存的搜索(比如"30万以内的宝马"), 查询条件作为percolator文档保存,
+ * 新写入的 cars/sales 反过来去匹配保存的查询, 按批发送, 命中结果通过 SavedSearchListener 回调
+ * 开销和写入量成正比, 和保存的搜索数量、轮询频率无关
+ * 只处理通过 ElasticsearchUtils 单条写入的document, 批量导入和索引迁移的数据不会触发
+ */
+@Service
+@Slf4j
+public class SavedSearchService implements DocumentWriteListener {
+
+    /**
+     * 保存查询条件的type
+     */
+    public static final String QUERY_TYPE = "queries";
+
+    private static final String QUERY_FIELD = "query";
+
+    /**
+     * 关闭时等待定时匹配结束的最长时间
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Autowired
+    private ResilientExecutor resilience;
+
+    @Autowired(required = false)
+    private List<SavedSearchListener> listeners = Collections.emptyList();
+
+    /**
+     * 保存查询条件的索引
+     */
+    @Value("${elasticsearch.saved-search.index:saved_searches}")
+    private String index;
+
+    /**
+     * 被匹配的业务索引, percolator索引会复制它的mapping
+     */
+    @Value("${elasticsearch.saved-search.source-index:car_shop}")
+    private String sourceIndex;
+
+    @Value("${elasticsearch.saved-search.types:cars,sales}")
+    private String[] types;
+
+    @Value("${elasticsearch.saved-search.batch-size:100}")
+    private int batchSize;
+
+    @Value("${elasticsearch.saved-search.flush-interval-millis:500}")
+    private long flushIntervalMillis;
+
+    /**
+     * 待匹配队列的容量, 满了之后丢弃并打印警告, 不阻塞写入
+     */
+    @Value("${elasticsearch.saved-search.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 每条document最多返回的命中数
+     */
+    @Value("${elasticsearch.saved-search.max-matches:100}")
+    private int maxMatches;
+
+    private BlockingQueue<PendingDocument> queue;
+
+    private ScheduledExecutorService flusher;
+
+    private volatile boolean indexReady;
+
+    @PostConstruct
+    public void init(){
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "saved-search-percolator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 先等正在执行的定时匹配结束, 再在当前线程把剩余的匹配完, 同一时间只有一个线程消费队列
+     */
+    @PreDestroy
+    public void destroy(){
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                log.warn("保存的搜索匹配线程[{}]秒内没有结束, 剩余[{}]条不再匹配", SHUTDOWN_TIMEOUT_SECONDS, queue.size());
+                return;
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+        flush();
+    }
+
+    /**
+     * 保存一个搜索
+     * @param owner 用户
+     * @param typeName 要匹配的类型(cars/sales)
+     * @param query 查询条件
+     * @return 保存的搜索id
+     */
+    public String register(String owner, String typeName, QueryBuilder query){
+        if (!Arrays.asList(types).contains(typeName)){
+            throw new IllegalArgumentException("type [" + typeName + "] is not watched, expected one of " + Arrays.toString(types));
+        }
+        ensureIndex();
+
+        IndexRequestBuilder indexRequestBuilder;
+        try {
+            indexRequestBuilder = client.prepareIndex(index, QUERY_TYPE)
+                    .setSource(jsonBuilder()
+                            .startObject()
+                                .field("owner", owner)
+                                .field("target_type", typeName)
+                                .field(QUERY_FIELD, query)
+                            .endObject())
+                    // 保存之后马上写入的document就要能匹配到
+                    .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+        } catch (IOException e){
+            throw new IllegalStateException("failed to serialize saved search", e);
+        }
+        return resilience.execute(Operation.INDEX, indexRequestBuilder::get).getId();
+    }
+
+    /**
+     * 删除保存的搜索
+     * @param id 保存的搜索id
+     * @return true 删除成功
+     */
+    public boolean unregister(String id){
+        return resilience.execute(Operation.DELETE, timeout -> client.prepareDelete(index, QUERY_TYPE, id)
+                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL)
+                .get(timeout))
+                .status() == RestStatus.OK;
+    }
+
+    @Override
+    public void onIndexed(String indexName, String typeName, String id, BytesReference source){
+        if (listeners.isEmpty() || !sourceIndex.equals(indexName) || !Arrays.asList(types).contains(typeName)){
+            return;
+        }
+        if (!queue.offer(new PendingDocument(indexName, typeName, id, source))){
+            log.warn("保存的搜索待匹配队列已满, 丢弃 {}/{}/{}", indexName, typeName, id);
+        }
+    }
+
+    /**
+     * 把队列里的document按批匹配, 一批一个multi search请求
+     */
+    void flush(){
+        List<PendingDocument> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0){
+            try {
+                percolate(batch);
+            } catch (Exception e){
+                log.error("匹配保存的搜索失败, 条数[{}]", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void percolate(List<PendingDocument> batch){
+        if (!indexReady && !ElasticsearchUtils.indexExist(index)){
+            // 还没有保存过任何搜索
+            return;
+        }
+        indexReady = true;
+
+        MultiSearchRequestBuilder multiSearch = client.prepareMultiSearch();
+        for (PendingDocument document : batch) {
+            multiSearch.add(client.prepareSearch(index)
+                    .setTypes(QUERY_TYPE)
+                    .setQuery(QueryBuilders.boolQuery()
+                            .filter(QueryBuilders.termQuery("target_type", document.type))
+                            .filter(new PercolateQueryBuilder(QUERY_FIELD, document.type, document.source)))
+                    .setFetchSource("owner", null)
+                    .setSize(maxMatches));
+        }
+
+        MultiSearchResponse.Item[] items = resilience.execute(Operation.SEARCH, multiSearch::get).getResponses();
+        for (int i = 0; i < items.length; i++) {
+            PendingDocument document = batch.get(i);
+            if (items[i].isFailure()){
+                log.warn("匹配 {}/{}/{} 失败:{}", document.index, document.type, document.id, items[i].getFailureMessage());
+                continue;
+            }
+
+            SearchHit[] hits = items[i].getResponse().getHits().getHits();
+            if (hits.length == 0){
+                continue;
+            }
+            Map<String, Object> source = XContentHelper.convertToMap(document.source, false).v2();
+            for (SearchHit hit : hits) {
+                deliver(new SavedSearchMatch(hit.getId(), (String) hit.getSource().get("owner"), document.index, document.type, document.id, source));
+            }
+        }
+    }
+
+    private void deliver(SavedSearchMatch match){
+        for (SavedSearchListener listener : listeners) {
+            try {
+                listener.onMatch(match);
+            } catch (Exception e){
+                log.error("保存的搜索[{}]回调失败", match.getSavedSearchId(), e);
+            }
+        }
+    }
+
+    /**
+     * percolator索引里要有被匹配类型的mapping, 从业务索引声明的mapping复制过来
+     */
+    private synchronized void ensureIndex(){
+        if (indexReady || ElasticsearchUtils.indexExist(index)){
+            indexReady = true;
+            return;
+        }
+
+        Map<String, String> sourceMappings = schemaManager.mappingSources(sourceIndex);
+        Map<String, String> mappings = new LinkedHashMap<>();
+        for (String typeName : types) {
+            String mapping = sourceMappings.get(typeName);
+            if (mapping == null){
+                throw new IllegalStateException("no mapping declared for [" + sourceIndex + "/" + typeName + "]");
+            }
+            mappings.put(typeName, mapping);
+        }
+        mappings.put(QUERY_TYPE, "{\"" + QUERY_TYPE + "\":{\"properties\":{"
+                + "\"" + QUERY_FIELD + "\":{\"type\":\"percolator\"},"
+                + "\"owner\":{\"type\":\"keyword\"},"
+                + "\"target_type\":{\"type\":\"keyword\"}}}}");
+
+        Settings settings = Settings.builder()
+                .put(schemaManager.settings(sourceIndex))
+                .put("index.number_of_shards", 1)
+                .build();
+
+        ElasticsearchUtils.createIndex(index, settings, mappings);
+        indexReady = true;
+        log.info("创建保存的搜索索引[{}], 匹配类型:{}", index, mappings.keySet());
+    }
+
+    private static final class PendingDocument {
+
+        private final String index;
+
+        private final String type;
+
+        private final String id;
+
+        private final BytesReference source;
+
+        private PendingDocument(String index, String type, String id, BytesReference source) {
+            this.index = index;
+            this.type = type;
+            this.id = id;
+            this.source = source;
+        }
+    }
+}
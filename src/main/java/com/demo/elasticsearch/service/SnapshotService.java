@@ -0,0 +1,286 @@
+package com.demo.elasticsearch.service;
+
+import com.demo.elasticsearch.client.ClusterStateCache;
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.model.SnapshotResult;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotStats;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.repositories.RepositoryMissingException;
+import org.elasticsearch.snapshots.RestoreInfo;
+import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author agent
+ * @date Create in 12:01 2026/10/19
+ * @Description 快照备份/恢复, 使用共享文件系统(fs)仓库, 每个节点的 path.repo 里都要包含仓库目录
+ * 快照是增量的: 只拷贝上一个快照之后新产生的段文件, 拍快照期间索引可以正常读写, 快照内容是开始那一刻的状态
+ */
+@Service
+@Slf4j
+public class SnapshotService {
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private ClusterStateCache clusterStateCache;
+
+    @Autowired
+    private ResilientExecutor resilience;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${elasticsearch.snapshot.repository:backup}")
+    private String repository;
+
+    /**
+     * 仓库目录, 是es节点上的路径, 不是本应用所在机器的路径
+     */
+    @Value("${elasticsearch.snapshot.location:/usr/share/elasticsearch/backup}")
+    private String location;
+
+    /**
+     * 定时快照的索引, 逗号分隔, 为空不做定时快照
+     */
+    @Value("${elasticsearch.snapshot.indices:}")
+    private String indices;
+
+    /**
+     * 定时快照的间隔(分钟), 0 不做定时快照
+     */
+    @Value("${elasticsearch.snapshot.interval-minutes:0}")
+    private long intervalMinutes;
+
+    /**
+     * 保留最近几个快照, 0 全部保留
+     */
+    @Value("${elasticsearch.snapshot.keep:7}")
+    private int keep;
+
+    /**
+     * 拍快照/恢复时每个节点的限速
+     */
+    @Value("${elasticsearch.snapshot.max-bytes-per-sec:40mb}")
+    private String maxBytesPerSec;
+
+    /**
+     * 等待拍快照/恢复/删除快照完成的超时时间, 这些请求在完成后才返回, 比普通的管理操作慢得多
+     */
+    @Value("${elasticsearch.snapshot.timeout:1h}")
+    private String completionTimeout;
+
+    private TimeValue timeout;
+
+    private ScheduledExecutorService scheduler;
+
+    private Timer duration;
+
+    private DistributionSummary bytes;
+
+    @PostConstruct
+    public void init(){
+        timeout = TimeValue.parseTimeValue(completionTimeout, "elasticsearch.snapshot.timeout");
+        if (meterRegistry != null){
+            duration = Timer.builder("elasticsearch.snapshot.duration").register(meterRegistry);
+            bytes = DistributionSummary.builder("elasticsearch.snapshot.bytes").baseUnit("bytes").register(meterRegistry);
+        }
+
+        if (intervalMinutes > 0 && StringUtils.isNotEmpty(indices)){
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "elasticsearch-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+            log.info("定时快照 [{}], 每[{}]分钟, 保留[{}]个", indices, intervalMinutes, keep);
+        }
+    }
+
+    @PreDestroy
+    public void destroy(){
+        if (scheduler != null){
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 注册fs仓库, 已经存在时覆盖设置
+     */
+    public void registerRepository(){
+        resilience.execute(Operation.ADMIN_WRITE, t -> client.admin().cluster().preparePutRepository(repository)
+                .setType("fs")
+                .setSettings(Settings.builder()
+                        .put("location", location)
+                        .put("compress", true)
+                        .put("max_snapshot_bytes_per_sec", maxBytesPerSec)
+                        .put("max_restore_bytes_per_sec", maxBytesPerSec))
+                .get(t));
+        log.info("快照仓库[{}] -> {}", repository, location);
+    }
+
+    /**
+     * 拍一个快照, 等待完成
+     * @param indexNames 索引, 支持别名和通配符
+     * @return 快照结果
+     */
+    public SnapshotResult snapshot(String... indexNames){
+        ensureRepository();
+
+        String name = "snapshot-" + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
+        SnapshotInfo info = resilience.execute(Operation.ADMIN_WRITE, t -> client.admin().cluster().prepareCreateSnapshot(repository, name)
+                .setIndices(indexNames)
+                .setIncludeGlobalState(false)
+                .setWaitForCompletion(true)
+                .get(timeout))
+                .getSnapshotInfo();
+
+        // 文件数/字节数只在快照状态里有
+        SnapshotStats stats = resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareSnapshotStatus(repository)
+                .setSnapshots(name)
+                .get(t))
+                .getSnapshots()
+                .get(0)
+                .getStats();
+
+        SnapshotResult result = new SnapshotResult(name, info.indices(), info.state().name(), info.endTime() - info.startTime(),
+                stats.getNumberOfFiles(), stats.getTotalSize(), info.failedShards());
+
+        if (duration != null){
+            duration.record(result.getDurationMillis(), TimeUnit.MILLISECONDS);
+            bytes.record(result.getBytes());
+        }
+        log.info("快照[{}] {} 索引{} 耗时[{}]ms 拷贝[{}]个文件[{}]字节 失败分片[{}]", name, result.getState(), result.getIndices(),
+                result.getDurationMillis(), result.getFiles(), result.getBytes(), result.getFailedShards());
+
+        if (info.state() == SnapshotState.FAILED){
+            throw new IllegalStateException("snapshot [" + name + "] failed: " + info.reason());
+        }
+        return result;
+    }
+
+    /**
+     * @return 仓库里的快照, 按开始时间从旧到新
+     */
+    public List<SnapshotInfo> snapshots(){
+        ensureRepository();
+        return resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareGetSnapshots(repository).get(t))
+                .getSnapshots()
+                .stream()
+                .sorted(Comparator.comparingLong(SnapshotInfo::startTime))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 恢复到改名后的新索引, 不影响线上索引, 用来验证备份
+     * @param snapshotName 快照名称
+     * @param suffix 新索引名的后缀, 例如 _restored
+     * @param indexNames 要恢复的索引, 不传恢复快照里的全部索引
+     * @return 恢复出来的索引
+     */
+    public List<String> restore(String snapshotName, String suffix, String... indexNames){
+        if (StringUtils.isEmpty(suffix)){
+            throw new IllegalArgumentException("suffix must not be empty, restoring over live indices is not supported");
+        }
+
+        RestoreInfo info = resilience.execute(Operation.ADMIN_WRITE, t -> client.admin().cluster().prepareRestoreSnapshot(repository, snapshotName)
+                .setIndices(indexNames)
+                .setRenamePattern("(.+)")
+                .setRenameReplacement("$1" + suffix)
+                .setIncludeAliases(false)
+                .setRestoreGlobalState(false)
+                .setWaitForCompletion(true)
+                .get(timeout))
+                .getRestoreInfo();
+        clusterStateCache.invalidate();
+
+        if (info.failedShards() > 0){
+            throw new IllegalStateException("restore of [" + snapshotName + "] failed on [" + info.failedShards() + "] shards");
+        }
+        log.info("快照[{}]恢复为{}", snapshotName, info.indices());
+        return info.indices();
+    }
+
+    /**
+     * 恢复到改名后的索引, 对比恢复前后的文档数, 然后删除恢复出来的索引
+     * @param snapshotName 快照名称
+     * @return 索引 -> [线上文档数, 恢复出来的文档数], 快照之后有写入时两者不同
+     */
+    public Map<String, long[]> verify(String snapshotName){
+        String suffix = "_verify";
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        for (String restored : restore(snapshotName, suffix)) {
+            String original = StringUtils.removeEnd(restored, suffix);
+            ClusterHealthResponse health = resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareHealth(restored)
+                    .setWaitForYellowStatus()
+                    .setTimeout(timeout)
+                    .get(TimeValue.timeValueMillis(timeout.millis() + t.millis())));
+            if (health.isTimedOut()){
+                throw new IllegalStateException("restored index [" + restored + "] did not reach yellow within " + timeout);
+            }
+            long live = ElasticsearchUtils.indexExist(original) ? ElasticsearchUtils.countDocument(original, null, 0, 0, null, false) : -1;
+            counts.put(original, new long[]{live, ElasticsearchUtils.countDocument(restored, null, 0, 0, null, false)});
+            ElasticsearchUtils.deleteIndex(restored);
+        }
+        return counts;
+    }
+
+    /**
+     * 删除快照, 只被这个快照引用的段文件会从仓库里删除
+     * @param snapshotName 快照名称
+     */
+    public void delete(String snapshotName){
+        resilience.execute(Operation.ADMIN_WRITE, t -> client.admin().cluster().prepareDeleteSnapshot(repository, snapshotName).get(timeout));
+        log.info("删除快照[{}]", snapshotName);
+    }
+
+    private void scheduledSnapshot(){
+        try {
+            snapshot(indices.split(","));
+
+            if (keep > 0){
+                List<SnapshotInfo> existing = snapshots();
+                for (SnapshotInfo old : existing.subList(0, Math.max(0, existing.size() - keep))) {
+                    delete(old.snapshotId().getName());
+                }
+            }
+        } catch (Exception e){
+            log.error("定时快照失败", e);
+        }
+    }
+
+    private void ensureRepository(){
+        try {
+            resilience.execute(Operation.ADMIN_READ, t -> client.admin().cluster().prepareGetRepositories(repository).get(t));
+        } catch (RepositoryMissingException e){
+            registerRepository();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.demo.elasticsearch.util;
+
+import com.demo.elasticsearch.client.AdaptiveLimiter;
+import com.demo.elasticsearch.client.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author agent
+ * @date Create in 11:17 2026/10/19
+ * @Description 批量写入, 按条数和字节数攒批后异步发送bulk请求, 同时在途的请求数有上限, 超过上限时add会阻塞(背压)
+ * 传入共享的 AdaptiveLimiter 时, 还要受全局自适应并发限制, 多个writer同时写入时不会压垮集群的bulk线程池
+ * 被集群拒绝(429)的条目按指数退避重新发送(和 BulkProcessor 的 BackoffPolicy 相同), 重试次数用完才算失败;
+ * 每个bulk请求有超时时间, 超时的请求整批算失败, close() 不会无限等待
+ */
+@Slf4j
+public class BulkWriter implements Closeable {
+
+    private final Client client;
+
+    /**
+     * 默认每批的最大字节数
+     */
+    public static final long DEFAULT_BATCH_BYTES = 5 * 1024 * 1024;
+
+    /**
+     * 估算字节数时每个操作的元数据开销, 与 BulkRequest 的估算一致
+     */
+    private static final int REQUEST_OVERHEAD = 50;
+
+    /**
+     * 默认的bulk请求超时时间
+     */
+    public static final TimeValue DEFAULT_TIMEOUT = TimeValue.timeValueSeconds(60);
+
+    /**
+     * 被拒绝条目的重试间隔: 50ms起指数增长, 最多重试8次(共约5秒)
+     */
+    private static final BackoffPolicy BACKOFF = BackoffPolicy.exponentialBackoff();
+
+    /**
+     * 重试时本地并发已满, 隔多久再试(毫秒)
+     */
+    private static final long LIMITER_POLL_MILLIS = 50;
+
+    /**
+     * 每批的条数
+     */
+    private final int batchActions;
+
+    /**
+     * 每批的最大字节数, 加入下一条会超过时先把当前批次发出去
+     */
+    private final long batchBytes;
+
+    /**
+     * 同时在途的bulk请求数
+     */
+    private final int concurrency;
+
+    private final Semaphore inFlight;
+
+    /**
+     * 共享的自适应并发限制, 可以为null
+     */
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * true 忽略版本冲突(外部版本号写入时, 旧数据覆盖不了新数据, 属于正常情况)
+     */
+    private final boolean ignoreVersionConflicts;
+
+    /**
+     * 单个bulk请求的超时时间
+     */
+    private final TimeValue timeout;
+
+    /**
+     * 超时检查和延迟重试, 只执行不阻塞的任务
+     */
+    private final ScheduledExecutorService scheduler;
+
+    private BulkRequest current = new BulkRequest();
+
+    private final AtomicLong docs = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicReference<String> firstFailure = new AtomicReference<>();
+
+    private final long startNanos = System.nanoTime();
+
+    public BulkWriter(Client client, int batchActions, int concurrency, boolean ignoreVersionConflicts) {
+        this(client, batchActions, DEFAULT_BATCH_BYTES, concurrency, null, ignoreVersionConflicts);
+    }
+
+    public BulkWriter(Client client, int batchActions, long batchBytes, int concurrency, AdaptiveLimiter limiter, boolean ignoreVersionConflicts) {
+        this(client, batchActions, batchBytes, concurrency, limiter, ignoreVersionConflicts, DEFAULT_TIMEOUT);
+    }
+
+    public BulkWriter(Client client, int batchActions, long batchBytes, int concurrency, AdaptiveLimiter limiter, boolean ignoreVersionConflicts,
+                      TimeValue timeout) {
+        this.client = client;
+        this.batchActions = batchActions;
+        this.batchBytes = batchBytes;
+        this.concurrency = concurrency;
+        this.inFlight = new Semaphore(concurrency);
+        this.limiter = limiter;
+        this.ignoreVersionConflicts = ignoreVersionConflicts;
+        this.timeout = timeout;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bulk-writer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 添加一个写操作(index/update/delete), 攒够一批之后发送
+     * @param request 写操作
+     */
+    public synchronized void add(ActionRequest request){
+        long size = estimateSize(request);
+        if (current.numberOfActions() > 0 && current.estimatedSizeInBytes() + size > batchBytes){
+            send();
+        }
+        if (size > batchBytes){
+            log.warn("单条写操作[{}]字节, 超过每批上限[{}]字节, 单独发送", size, batchBytes);
+        }
+
+        current.add(request);
+        if (current.numberOfActions() >= batchActions || current.estimatedSizeInBytes() >= batchBytes){
+            send();
+        }
+    }
+
+    /**
+     * 把没攒够一批的数据也发送出去
+     */
+    public synchronized void flush(){
+        if (current.numberOfActions() > 0){
+            send();
+        }
+    }
+
+    /**
+     * 发送剩余数据, 并等待所有在途的请求(包括重试)完成
+     */
+    @Override
+    public void close(){
+        flush();
+        try {
+            inFlight.acquire(concurrency);
+            inFlight.release(concurrency);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for bulk requests", e);
+        } finally {
+            scheduler.shutdownNow();
+        }
+
+        log.info("bulk写入完成, 成功[{}]条, 失败[{}]条, 版本冲突[{}]条, 重试[{}]次, 速度[{}]条/秒",
+                docs.get(), failures.get(), conflicts.get(), retries.get(), docsPerSecond());
+    }
+
+    private void send(){
+        final BulkRequest request = current;
+        current = new BulkRequest();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for bulk slot", e);
+        }
+        if (limiter != null){
+            try {
+                limiter.acquire();
+            } catch (RuntimeException e){
+                inFlight.release();
+                throw e;
+            }
+        }
+        execute(request, BACKOFF.iterator());
+    }
+
+    /**
+     * 在 scheduler 线程上重新发送, 本地并发已满时不阻塞, 稍后再试
+     */
+    private void retry(BulkRequest request, Iterator<TimeValue> backoff){
+        if (limiter != null){
+            try {
+                limiter.acquire(0);
+            } catch (LimitExceededException e){
+                scheduler.schedule(() -> retry(request, backoff), LIMITER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        try {
+            execute(request, backoff);
+        } catch (RuntimeException e){
+            // 没有调用方可以接收这个异常, 记为失败并释放名额, 否则 close() 会一直等待
+            if (limiter != null){
+                limiter.onIgnored();
+            }
+            fail(request.numberOfActions(), e.getMessage());
+            log.error("bulk重新发送失败, 条数[{}]", request.numberOfActions(), e);
+            inFlight.release();
+        }
+    }
+
+    /**
+     * 发送一个bulk请求, 调用前已经占用了 inFlight 和 limiter 的名额; 整个请求(包括重试)结束时释放 inFlight
+     */
+    private void execute(BulkRequest request, Iterator<TimeValue> backoff){
+        final long start = System.nanoTime();
+        final AtomicBoolean done = new AtomicBoolean();
+        final ScheduledFuture<?> watchdog = scheduler.schedule(() -> {
+            // 超时之后的响应直接丢弃, 这批数据是否已经写入不确定, 整批算失败
+            if (done.compareAndSet(false, true)){
+                if (limiter != null){
+                    limiter.onDropped(start);
+                }
+                fail(request.numberOfActions(), "bulk request timed out after " + timeout);
+                inFlight.release();
+            }
+        }, timeout.millis(), TimeUnit.MILLISECONDS);
+
+        client.bulk(request, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                if (!done.compareAndSet(false, true)){
+                    return;
+                }
+                watchdog.cancel(false);
+
+                BulkRequest rejected = onBulkResponse(request, response, backoff.hasNext());
+                if (limiter != null){
+                    if (rejected.numberOfActions() > 0){
+                        limiter.onDropped(start);
+                    } else {
+                        limiter.onSuccess(System.nanoTime() - start);
+                    }
+                }
+                if (rejected.numberOfActions() > 0){
+                    scheduleRetry(rejected, backoff);
+                } else {
+                    inFlight.release();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (!done.compareAndSet(false, true)){
+                    return;
+                }
+                watchdog.cancel(false);
+
+                boolean overload = AdaptiveLimiter.isOverload(e);
+                if (limiter != null){
+                    if (overload){
+                        limiter.onDropped(start);
+                    } else {
+                        limiter.onIgnored();
+                    }
+                }
+                if (overload && backoff.hasNext()){
+                    scheduleRetry(request, backoff);
+                    return;
+                }
+                fail(request.numberOfActions(), e.getMessage());
+                log.error("bulk请求失败, 条数[{}]", request.numberOfActions(), e);
+                inFlight.release();
+            }
+        });
+    }
+
+    private void scheduleRetry(BulkRequest request, Iterator<TimeValue> backoff){
+        TimeValue delay = backoff.next();
+        retries.incrementAndGet();
+        log.warn("bulk有[{}]条被集群拒绝, {}后重新发送", request.numberOfActions(), delay);
+        scheduler.schedule(() -> retry(request, backoff), delay.millis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 统计每个条目的结果
+     * @param canRetry 还可以重试, 被拒绝(429)的条目不算失败
+     * @return 被拒绝、需要重新发送的条目
+     */
+    private BulkRequest onBulkResponse(BulkRequest request, BulkResponse response, boolean canRetry){
+        BulkRequest rejected = new BulkRequest().timeout(request.timeout());
+        for (BulkItemResponse item : response.getItems()) {
+            if (!item.isFailed()){
+                docs.incrementAndGet();
+            } else if (ignoreVersionConflicts && item.getFailure().getStatus() == RestStatus.CONFLICT){
+                conflicts.incrementAndGet();
+            } else if (canRetry && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS){
+                rejected.add(request.requests().get(item.getItemId()));
+            } else {
+                fail(1, item.getFailureMessage());
+            }
+        }
+        return rejected;
+    }
+
+    private void fail(int count, String message){
+        failures.addAndGet(count);
+        firstFailure.compareAndSet(null, message);
+    }
+
+    private static long estimateSize(ActionRequest request){
+        if (request instanceof IndexRequest){
+            IndexRequest indexRequest = (IndexRequest) request;
+            return (indexRequest.source() == null ? 0 : indexRequest.source().length()) + REQUEST_OVERHEAD;
+        }
+        if (request instanceof UpdateRequest){
+            UpdateRequest updateRequest = (UpdateRequest) request;
+            long size = REQUEST_OVERHEAD;
+            if (updateRequest.doc() != null && updateRequest.doc().source() != null){
+                size += updateRequest.doc().source().length();
+            }
+            if (updateRequest.upsertRequest() != null && updateRequest.upsertRequest().source() != null){
+                size += updateRequest.upsertRequest().source().length();
+            }
+            return size;
+        }
+        return REQUEST_OVERHEAD;
+    }
+
+    public long getDocs() {
+        return docs.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public String getFirstFailure() {
+        return firstFailure.get();
+    }
+
+    /**
+     * @return 从创建到现在的平均写入速度
+     */
+    public long docsPerSecond(){
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : docs.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
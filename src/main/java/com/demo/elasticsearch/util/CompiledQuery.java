@@ -0,0 +1,158 @@
+package com.demo.elasticsearch.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.Arrays;
+
+/**
+ * @author agent
+ * @date Create in 11:15 2026/10/19
+ * @Description 预编译查询, 查询结构(索引/类型/字段/高亮/排序)只解析一次, 每次调用只绑定变化的查询值
+ */
+public final class CompiledQuery {
+
+    private static final String[] EMPTY = new String[0];
+
+    /**
+     * 索引
+     */
+    private final String[] indices;
+
+    /**
+     * 类型
+     */
+    private final String[] types;
+
+    /**
+     * 查询字段, 与绑定值按下标一一对应
+     */
+    private final String[] matchFields;
+
+    /**
+     * true 使用短语精准匹配
+     */
+    private final boolean matchPhrase;
+
+    /**
+     * 高亮字段
+     */
+    private final String highlightField;
+
+    /**
+     * 以下几个对象只在发送时被序列化, 不会被修改, 所以可以在多次请求之间共享
+     */
+    private final HighlightBuilder highlightBuilder;
+
+    private final FieldProjection projection;
+
+    private final SortBuilder<?> sortBuilder;
+
+    private final int size;
+
+    /**
+     * 路由字段在 matchFields 里的下标, 没有为-1
+     */
+    private final int routingIndex;
+
+    CompiledQuery(String indexes, String types, String[] matchFields, boolean matchPhrase, String highlightField, FieldProjection projection,
+                  String sortField, SortOrder sortOrder, Integer size, String routingField) {
+        if (StringUtils.isEmpty(indexes)){
+            throw new IllegalArgumentException("indexes must not be empty");
+        }
+
+        this.indices = indexes.split(",");
+        this.types = StringUtils.isNotEmpty(types) ? types.split(",") : EMPTY;
+        this.matchFields = matchFields == null ? EMPTY : matchFields.clone();
+        this.matchPhrase = matchPhrase;
+        this.highlightField = highlightField;
+
+        if (StringUtils.isNotEmpty(highlightField)){
+            this.highlightBuilder = new HighlightBuilder().field(highlightField);
+        } else {
+            this.highlightBuilder = null;
+        }
+
+        this.projection = projection == null ? FieldProjection.all() : projection;
+
+        if (StringUtils.isNotEmpty(sortField)){
+            this.sortBuilder = SortBuilders.fieldSort(sortField).order(sortOrder == null ? SortOrder.ASC : sortOrder);
+        } else {
+            this.sortBuilder = null;
+        }
+
+        this.size = size == null ? 0 : size;
+        this.routingIndex = routingField == null ? -1 : Arrays.asList(this.matchFields).indexOf(routingField);
+    }
+
+    /**
+     * 绑定查询值, 生成本次要发送的请求
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param values 查询值, 顺序与编译时的 matchFields 一致, 空值的条件会被跳过
+     * @return SearchRequest
+     */
+    public SearchRequest bind(long startTime, long endTime, String... values){
+        if (values.length != matchFields.length){
+            throw new IllegalArgumentException("expected " + matchFields.length + " values but got " + values.length);
+        }
+
+        BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
+
+        if (startTime > 0 && endTime > 0){
+            boolQueryBuilder.must(QueryBuilders.rangeQuery("processTime")
+                    .format("epoch_millis")
+                    .from(startTime)
+                    .to(endTime)
+                    .includeLower(true)
+                    .includeUpper(true)
+            );
+        }
+
+        for (int i = 0; i < matchFields.length; i++) {
+            if (StringUtils.isBlank(values[i])){
+                continue;
+            }
+            if (matchPhrase){
+                boolQueryBuilder.must(QueryBuilders.matchPhraseQuery(matchFields[i], values[i]));
+            } else {
+                boolQueryBuilder.must(QueryBuilders.matchQuery(matchFields[i], values[i]));
+            }
+        }
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(boolQueryBuilder);
+
+        if (highlightBuilder != null){
+            sourceBuilder.highlighter(highlightBuilder);
+        }
+        projection.apply(sourceBuilder);
+        if (sortBuilder != null){
+            sourceBuilder.sort(sortBuilder);
+        }
+        if (size > 0){
+            sourceBuilder.size(size);
+        }
+
+        SearchRequest searchRequest = new SearchRequest(indices, sourceBuilder).types(types);
+        if (routingIndex >= 0 && StringUtils.isNotBlank(values[routingIndex])){
+            // 按路由字段精确查询时只查一个分片
+            searchRequest.routing(values[routingIndex]);
+        }
+        return searchRequest;
+    }
+
+    public String getHighlightField() {
+        return highlightField;
+    }
+
+    public FieldProjection getProjection() {
+        return projection;
+    }
+}
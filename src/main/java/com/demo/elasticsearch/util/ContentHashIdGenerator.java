@@ -0,0 +1,35 @@
+package com.demo.elasticsearch.util;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.util.Base64;
+
+/**
+ * @author agent
+ * @date Create in 11:59 2026/10/19
+ * @Description 按内容生成id: _source的128位MurmurHash3, base64url编码为22个字符
+ * 相同内容得到相同id, 以create方式写入时重复的数据直接冲突返回, 用来去重; 字段顺序不同的json算不同的内容
+ */
+public class ContentHashIdGenerator implements IdGenerator {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    @Override
+    public String nextId(BytesReference source){
+        if (source == null){
+            throw new IllegalArgumentException("content hash id needs the document source");
+        }
+
+        BytesRef bytes = source.toBytesRef();
+        MurmurHash3.Hash128 hash = MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, new MurmurHash3.Hash128());
+
+        byte[] id = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            id[i] = (byte) (hash.h1 >>> (8 * (7 - i)));
+            id[8 + i] = (byte) (hash.h2 >>> (8 * (7 - i)));
+        }
+        return ENCODER.encodeToString(id);
+    }
+}
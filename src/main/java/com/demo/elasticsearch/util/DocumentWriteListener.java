@@ -0,0 +1,30 @@
+package com.demo.elasticsearch.util;
+
+import org.elasticsearch.common.bytes.BytesReference;
+
+/**
+ * @author agent
+ * @date Create in 11:47 2026/10/19
+ * @Description ElasticsearchUtils 写入document成功之后的回调, 注册为spring bean即可生效
+ * 回调在写入线程上同步执行, 实现里不要做耗时操作
+ */
+public interface DocumentWriteListener {
+
+    /**
+     * document写入(新增或更新)成功
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @param source 写入后完整的_source
+     */
+    void onIndexed(String indexName, String typeName, String id, BytesReference source);
+
+    /**
+     * document删除成功
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     */
+    default void onDeleted(String indexName, String typeName, String id){
+    }
+}
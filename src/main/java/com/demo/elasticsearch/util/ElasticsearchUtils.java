@@ -1,35 +1,67 @@
 package com.demo.elasticsearch.util;
 
+import com.demo.elasticsearch.client.ClientExecutor;
+import com.demo.elasticsearch.client.ClusterStateCache;
+import com.demo.elasticsearch.client.ConcurrencyLimiters;
+import com.demo.elasticsearch.client.Operation;
+import com.demo.elasticsearch.client.PayloadGuard;
+import com.demo.elasticsearch.client.QueryProfiler;
+import com.demo.elasticsearch.client.ReplicaRouter;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import com.demo.elasticsearch.model.ChangeEvent;
+import com.demo.elasticsearch.model.Checkpoint;
 import com.demo.elasticsearch.model.PageVO;
+import com.demo.elasticsearch.schema.SchemaManager;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
-import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
-import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
 import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * @author 周泽
@@ -43,31 +75,88 @@ public class ElasticsearchUtils {
     @Autowired
     private TransportClient transportClient;
 
+    @Autowired
+    private ReplicaRouter replicaRouter;
+
+    @Autowired
+    private ResilientExecutor resilientExecutor;
+
+    @Autowired
+    private ConcurrencyLimiters concurrencyLimiters;
+
+    @Autowired
+    private PayloadGuard payloadGuard;
+
+    @Autowired
+    private ClientExecutor clientExecutor;
+
+    @Autowired
+    private ClusterStateCache clusterStateCache;
+
+    @Autowired(required = false)
+    private List<DocumentWriteListener> documentWriteListeners = Collections.emptyList();
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private QueryProfiler queryProfiler;
+
     private static TransportClient client;
 
+    private static ReplicaRouter router;
+
+    private static ResilientExecutor resilience;
+
+    private static ConcurrencyLimiters limiters;
+
+    private static PayloadGuard payload;
+
+    private static ClientExecutor executor;
+
+    private static ClusterStateCache clusterState;
+
+    private static List<DocumentWriteListener> writeListeners;
+
+    private static SchemaManager schema;
+
+    private static IdGenerator ids;
+
+    private static QueryProfiler profiler;
+
     @PostConstruct
     public void init(){
         client = this.transportClient;
+        router = this.replicaRouter;
+        resilience = this.resilientExecutor;
+        limiters = this.concurrencyLimiters;
+        payload = this.payloadGuard;
+        executor = this.clientExecutor;
+        clusterState = this.clusterStateCache;
+        writeListeners = this.documentWriteListeners;
+        schema = this.schemaManager;
+        ids = this.idGenerator;
+        profiler = this.queryProfiler;
     }
 
     /**
-     * 判断索引是否存在
+     * 判断索引是否存在, 使用短时间缓存的集群元数据
      * @param indexName 索引名称
      * @return true/false
      */
     public static boolean indexExist(String indexName){
-        IndicesExistsResponse indicesExistsResponse = client.admin()
-                .indices()
-                .exists(new IndicesExistsRequest(indexName))
-                .actionGet();
+        boolean exists = resilience.execute(Operation.ADMIN_READ, timeout -> clusterState.exists(indexName, timeout));
 
-        if (indicesExistsResponse.isExists()){
+        if (exists){
             log.info("Index ['{}'] is exists", indexName);
         } else {
             log.info("Index ['{}'] is not exists", indexName);
         }
 
-        return indicesExistsResponse.isExists();
+        return exists;
     }
 
     /**
@@ -81,16 +170,40 @@ public class ElasticsearchUtils {
             log.info("Index is not exist");
         }
 
-        CreateIndexResponse response = client.admin()
+        CreateIndexResponse response = resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin()
                 .indices()
                 .prepareCreate(indexName)
-                .execute()
-                .actionGet();
+                .get(timeout));
+        clusterState.invalidate();
 
         return response.isAcknowledged();
 
     }
 
+    /**
+     * 创建索引, 同时指定settings和mappings
+     * @param indexName 索引名称
+     * @param settings settings
+     * @param mappings type -> mapping json
+     * @return isAcknowledged
+     */
+    public static boolean createIndex(String indexName, Settings settings, Map<String, String> mappings){
+
+        CreateIndexRequestBuilder createIndexRequestBuilder = client.admin()
+                .indices()
+                .prepareCreate(indexName)
+                .setSettings(settings);
+
+        for (Map.Entry<String, String> entry : mappings.entrySet()) {
+            createIndexRequestBuilder.addMapping(entry.getKey(), entry.getValue());
+        }
+
+        CreateIndexResponse response = resilience.execute(Operation.ADMIN_WRITE, createIndexRequestBuilder::get);
+        clusterState.invalidate();
+
+        return response.isAcknowledged();
+    }
+
     /**
      * 删除索引
      * @param indexName 索引名称
@@ -102,17 +215,17 @@ public class ElasticsearchUtils {
             log.info("Index is not exist");
         }
 
-        DeleteIndexResponse response = client.admin()
+        DeleteIndexResponse response = resilience.execute(Operation.ADMIN_WRITE, timeout -> client.admin()
                 .indices()
                 .prepareDelete(indexName)
-                .execute()
-                .actionGet();
+                .get(timeout));
+        clusterState.invalidate();
 
         return response.isAcknowledged();
     }
 
     /**
-     * 创建一个document,需要手动指定id
+     * 创建一个document,需要手动指定id, type声明了路由字段时用数据里这个字段的值作为routing
      * @param indexName 索引名称
      * @param typeName 类型名称
      * @param id id
@@ -121,37 +234,64 @@ public class ElasticsearchUtils {
      */
     public static String createDocument(String indexName, String typeName, String id, XContentBuilder xContentBuilder){
 
-        IndexResponse response = client
+        IndexResponse response = resilience.execute(Operation.INDEX, client
                 .prepareIndex(indexName, typeName, id)
-                .setSource(xContentBuilder)
-                .get();
+                .setRouting(routingOf(indexName, typeName, xContentBuilder.bytes()))
+                .setSource(xContentBuilder)::get);
 
         log.info("add document response:{}", response.toString());
 
+        notifyIndexed(indexName, typeName, response.getId(), xContentBuilder.bytes());
+
         return response.getId();
     }
 
     /**
-     * 创建一个document,不需要手动指定id
+     * 创建一个document,不需要手动指定id, id由 IdGenerator 在客户端生成, 以create方式写入,
+     * 超时重试时已经写入成功的会版本冲突, 按内容生成id时重复的数据也会版本冲突, 都直接返回这个id
      * @param indexName 索引名称
      * @param typeName 类型名称
      * @param xContentBuilder 数据(fields)
      * @return id
      */
     public static String createDocumentWithNoId(String indexName, String typeName, XContentBuilder xContentBuilder){
+        String id = ids.nextId(xContentBuilder.bytes());
+        if (id != null){
+            try {
+                IndexResponse response = resilience.execute(Operation.CREATE, client
+                        .prepareIndex(indexName, typeName, id)
+                        .setOpType(IndexRequest.OpType.CREATE)
+                        .setRouting(routingOf(indexName, typeName, xContentBuilder.bytes()))
+                        .setSource(xContentBuilder)::get);
+
+                log.info("add document response:{}", response.toString());
+            } catch (ElasticsearchException e){
+                if (!(ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException)){
+                    throw e;
+                }
+                log.info("document [{}/{}/{}] 已经存在", indexName, typeName, id);
+                return id;
+            }
 
-        IndexResponse response = client
+            notifyIndexed(indexName, typeName, id, xContentBuilder.bytes());
+            return id;
+        }
+
+        IndexResponse response = resilience.execute(Operation.INDEX, client
                 .prepareIndex(indexName, typeName)
-                .setSource(xContentBuilder)
-                .get();
+                .setRouting(routingOf(indexName, typeName, xContentBuilder.bytes()))
+                .setSource(xContentBuilder)::get);
 
         log.info("add document response:{}", response.toString());
 
+        notifyIndexed(indexName, typeName, response.getId(), xContentBuilder.bytes());
+
         return response.getId();
     }
 
     /**
-     * 更新document,partial update
+     * 更新document,partial update, routing从更新的数据里取;
+     * 声明了路由字段的type, 更新的数据里没有路由字段时要用指定routing的重载
      * @param indexName 索引名称
      * @param typeName 类型名称
      * @param id id
@@ -159,53 +299,113 @@ public class ElasticsearchUtils {
      * @return id
      */
     public static String updateDocument(String indexName, String typeName, String id, XContentBuilder xContentBuilder){
+        return updateDocument(indexName, typeName, id, routingOf(indexName, typeName, xContentBuilder.bytes()), xContentBuilder);
+    }
+
+    /**
+     * 更新document,partial update, 指定routing
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @param routing 写入时的routing
+     * @param xContentBuilder 数据
+     * @return id
+     * @throws IllegalArgumentException type声明了路由字段但没有routing
+     */
+    public static String updateDocument(String indexName, String typeName, String id, String routing, XContentBuilder xContentBuilder){
+        requireRouting(indexName, typeName, routing);
 
-        UpdateResponse updateResponse = client
+        // 有写入回调时取回更新后的完整_source
+        UpdateResponse updateResponse = resilience.execute(Operation.UPDATE, client
                 .prepareUpdate(indexName, typeName, id)
+                .setRouting(routing)
                 .setDoc(xContentBuilder)
-                .get();
+                .setFetchSource(!writeListeners.isEmpty())::get);
 
         log.info("update response:{}", updateResponse.toString());
 
+        if (updateResponse.getGetResult() != null){
+            notifyIndexed(indexName, typeName, id, updateResponse.getGetResult().sourceRef());
+        }
+
         return updateResponse.getId();
     }
 
     /**
-     * 删除document
+     * 删除document, 声明了路由字段的type要用指定routing的重载
      * @param indexName 索引名称
      * @param typeName 类型名称
      * @param id id
      * @return id
      */
     public static String deleteDocument(String indexName, String typeName, String id){
+        return deleteDocument(indexName, typeName, id, null);
+    }
+
+    /**
+     * 删除document, 指定routing
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @param routing 写入时的routing
+     * @return id
+     * @throws IllegalArgumentException type声明了路由字段但没有routing
+     */
+    public static String deleteDocument(String indexName, String typeName, String id, String routing){
+        requireRouting(indexName, typeName, routing);
 
-        DeleteResponse response = client
+        DeleteResponse response = resilience.execute(Operation.DELETE, client
                 .prepareDelete(indexName, typeName, id)
-                .get();
+                .setRouting(routing)::get);
 
         log.info("delete response:{}", response.toString());
+        notifyDeleted(indexName, typeName, id);
 
         return response.getId();
     }
 
     /**
-     * 根据id获取document
+     * 根据id获取document, 声明了路由字段的type要用指定routing的重载
      * @param indexName 索引名称
      * @param typeName 类型名称
      * @param id id
      * @return _source数据
      */
     public static String getDocumentById(String indexName, String typeName, String id){
+        return getDocumentById(indexName, typeName, id, null);
+    }
 
-        GetResponse response = client
+    /**
+     * 根据id获取document, 指定routing, 只访问routing所在的分片
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @param routing 写入时的routing
+     * @return _source数据
+     * @throws IllegalArgumentException type声明了路由字段但没有routing
+     */
+    public static String getDocumentById(String indexName, String typeName, String id, String routing){
+        requireRouting(indexName, typeName, routing);
+
+        GetResponse response = executeGet(client
                 .prepareGet(indexName, typeName, id)
-                .get();
+                .setRouting(routing)
+                .request());
 
         log.info("get response");
 
         return response.getSourceAsString();
     }
 
+    /**
+     * 一次请求按id批量获取document, 代替逐条get
+     * @param multiGetRequest 要获取的document
+     * @return 结果, 顺序和请求一致
+     */
+    public static MultiGetResponse multiGet(MultiGetRequest multiGetRequest){
+        return resilience.execute(Operation.GET, timeout -> client.multiGet(multiGetRequest).actionGet(timeout));
+    }
+
     /**
      * 只做查询,没有排序
      * @param indexes 索引
@@ -215,7 +415,7 @@ public class ElasticsearchUtils {
      * @return 结果集
      */
     public static List<Map<String,Object>> searchDocument(String indexes, String types, Map<String,String> matchMap, String fields){
-        return searchDocument(indexes, types, 0, 0, matchMap, false, null, fields, null, null, null);
+        return searchDocument(indexes, types, 0, 0, matchMap, false, null, fields, null, (SortOrder) null, null);
     }
 
 
@@ -269,10 +469,117 @@ public class ElasticsearchUtils {
      */
     public static List<Map<String, Object>> searchDocument(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap, boolean matchPhrase,
                                                            String highlightField, String fields, String sortField, SortOrder sortOrder, Integer size){
+        return searchDocument(indexes, types, startTime, endTime, matchMap, matchPhrase, highlightField, sortField, sortOrder, size, FieldProjection.source(fields));
+    }
+
+    /**
+     * 搜索document, 可以指定返回字段的投影方式(_source过滤/doc_values/stored_fields)
+     * @param indexes 索引名
+     * @param types 类型
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param matchMap 查询条件(filed:value)
+     * @param matchPhrase true 使用短语精准匹配
+     * @param highlightField 高亮显示的field
+     * @param sortField 排序field
+     * @param sortOrder 正序倒序(正序的话需要字段有正排索引)
+     * @param size 文档大小限制
+     * @param projection 返回字段的投影方式
+     * @return 结果集
+     */
+    public static List<Map<String, Object>> searchDocument(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap, boolean matchPhrase,
+                                                           String highlightField, String sortField, SortOrder sortOrder, Integer size, FieldProjection projection){
         if (StringUtils.isEmpty(indexes)){
             return null;
         }
 
+        SearchRequestBuilder searchRequestBuilder = prepareSearch(indexes, types, startTime, endTime, matchMap, matchPhrase, highlightField,
+                sortField, sortOrder, size, projection);
+
+        // 把请求体打印出来
+        if (log.isDebugEnabled()){
+            log.debug("查询请求体:{}", searchRequestBuilder);
+        }
+
+        // 发送请求,执行查询
+        SearchResponse response = executeSearch(searchRequestBuilder.request());
+
+        long totalHits = response.getHits().totalHits();
+        long length = response.getHits().getHits().length;
+
+        log.info("共查询到[{}]条数据,处理数据条数[{}]", totalHits, length);
+
+        if (response.status().getStatus() == 200){
+            return setSearchResponse(response, highlightField, projection);
+        }
+
+        return null;
+    }
+
+    /**
+     * 查询并把命中结果直接写到输出流, _source保持原始字节不转成String/Map, 适合原样转发给前端的接口
+     * 输出格式: {"total":N,"hits":[{"_index":..,"_type":..,"_id":..,"_score":..,"_source":{..}}]}
+     * @param out 输出流, 不会被关闭
+     * @param indexes 索引
+     * @param types 类型
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param matchMap 查询条件(filed:value)
+     * @param matchPhrase true 使用短语精准匹配
+     * @param fields 要返回的_source字段,不传返回全部
+     * @param sortField 排序field
+     * @param sortOrder 正序倒序
+     * @param size 文档大小限制
+     * @return 写出的条数
+     */
+    public static int searchDocumentTo(OutputStream out, String indexes, String types, long startTime, long endTime, Map<String,String> matchMap,
+                                       boolean matchPhrase, String fields, String sortField, SortOrder sortOrder, Integer size) throws IOException {
+        SearchRequestBuilder searchRequestBuilder = prepareSearch(indexes, types, startTime, endTime, matchMap, matchPhrase, null,
+                sortField, sortOrder, size, FieldProjection.source(fields));
+
+        return HitStreamer.writeHits(executeSearch(searchRequestBuilder.request()), out);
+    }
+
+    /**
+     * 使用预编译查询, 把命中结果直接写到输出流
+     * @param out 输出流, 不会被关闭
+     * @param compiledQuery 预编译的查询结构
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param values 查询值, 顺序与编译时的 matchFields 一致
+     * @return 写出的条数
+     */
+    public static int searchDocumentTo(OutputStream out, CompiledQuery compiledQuery, long startTime, long endTime, String... values) throws IOException {
+        return HitStreamer.writeHits(executeSearch(compiledQuery.bind(startTime, endTime, values)), out);
+    }
+
+    /**
+     * 根据id把_source原样写到输出流
+     * @param out 输出流, 不会被关闭
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @param routing 写入时的routing, 没有传null
+     * @return 不存在返回false, 什么也不写
+     */
+    public static boolean writeDocumentById(OutputStream out, String indexName, String typeName, String id, String routing) throws IOException {
+        GetResponse response = executeGet(client
+                .prepareGet(indexName, typeName, id)
+                .setRouting(routing)
+                .request());
+        if (!response.isExists()){
+            return false;
+        }
+        HitStreamer.writeSource(response.getSourceAsBytesRef(), out);
+        return true;
+    }
+
+    /**
+     * 构建查询请求
+     */
+    private static SearchRequestBuilder prepareSearch(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap,
+                                                      boolean matchPhrase, String highlightField, String sortField, SortOrder sortOrder,
+                                                      Integer size, FieldProjection projection){
         // 构建查询的request body
         SearchRequestBuilder searchRequestBuilder = client.prepareSearch(indexes.split(","));
 
@@ -293,12 +600,11 @@ public class ElasticsearchUtils {
         // 搜索条件加到request中
         searchRequestBuilder.setQuery(boolQueryBuilder);
 
-        // 定制返回的fields
-        if (StringUtils.isNotEmpty(fields)){
-            searchRequestBuilder.setFetchSource(fields.split(","), null);
-        }
+        // 按路由字段精确查询时只查一个分片
+        searchRequestBuilder.setRouting(searchRouting(indexes, types, matchMap));
 
-        searchRequestBuilder.setFetchSource(true);
+        // 定制返回的fields
+        projection.apply(searchRequestBuilder);
 
         // 设置排序
         if (StringUtils.isNotEmpty(sortField)){
@@ -310,26 +616,221 @@ public class ElasticsearchUtils {
             searchRequestBuilder.setSize(size);
         }
 
-        // 把请求体打印出来
-        log.info("查询请求体:{}", searchRequestBuilder);
+        return searchRequestBuilder;
+    }
 
-        // 发送请求,执行查询
-        SearchResponse response = searchRequestBuilder
-                .execute()
-                .actionGet();
+    /**
+     * 预编译查询结构, 返回的对象可以缓存起来反复使用, 避免每次查询都拆分字符串、重建高亮和排序对象
+     * @param indexes 索引
+     * @param types 类型
+     * @param matchFields 查询条件的field, 执行时按顺序绑定值
+     * @param matchPhrase true 使用短语精准匹配
+     * @param highlightField 高亮显示的field
+     * @param fields 要显示的fields,不传返回全部
+     * @param sortField 排序field
+     * @param sortOrder 正序倒序(正序的话需要字段有正排索引)
+     * @param size 文档大小限制
+     * @return CompiledQuery
+     */
+    public static CompiledQuery compileQuery(String indexes, String types, String[] matchFields, boolean matchPhrase, String highlightField,
+                                             String fields, String sortField, SortOrder sortOrder, Integer size){
+        return compileQuery(indexes, types, matchFields, matchPhrase, highlightField, FieldProjection.source(fields), sortField, sortOrder, size);
+    }
 
-        long totalHits = response.getHits().totalHits();
-        long length = response.getHits().getHits().length;
+    /**
+     * 预编译查询结构, 可以指定返回字段的投影方式
+     * @param indexes 索引
+     * @param types 类型
+     * @param matchFields 查询条件的field, 执行时按顺序绑定值
+     * @param matchPhrase true 使用短语精准匹配
+     * @param highlightField 高亮显示的field
+     * @param projection 返回字段的投影方式
+     * @param sortField 排序field
+     * @param sortOrder 正序倒序(正序的话需要字段有正排索引)
+     * @param size 文档大小限制
+     * @return CompiledQuery
+     */
+    public static CompiledQuery compileQuery(String indexes, String types, String[] matchFields, boolean matchPhrase, String highlightField,
+                                             FieldProjection projection, String sortField, SortOrder sortOrder, Integer size){
+        String routingField = schema == null || StringUtils.isEmpty(indexes) ? null
+                : schema.routingField(indexes.split(","), StringUtils.isNotEmpty(types) ? types.split(",") : null);
+        return new CompiledQuery(indexes, types, matchFields, matchPhrase, highlightField, projection, sortField, sortOrder, size, routingField);
+    }
 
-        log.info("共查询到[{}]条数据,处理数据条数[{}]", totalHits, length);
+    /**
+     * 使用预编译查询搜索document
+     * @param compiledQuery 预编译的查询结构
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param values 查询值, 顺序与编译时的 matchFields 一致
+     * @return 结果集
+     */
+    public static List<Map<String, Object>> searchDocument(CompiledQuery compiledQuery, long startTime, long endTime, String... values){
+        SearchRequest searchRequest = compiledQuery.bind(startTime, endTime, values);
+
+        // 请求体只在debug时才序列化打印
+        if (log.isDebugEnabled()){
+            log.debug("查询请求体:{}", searchRequest.source());
+        }
+
+        SearchResponse response = executeSearch(searchRequest);
+
+        log.info("共查询到[{}]条数据,处理数据条数[{}]", response.getHits().totalHits(), response.getHits().getHits().length);
 
         if (response.status().getStatus() == 200){
-            return setSearchResponse(response, highlightField);
+            return setSearchResponse(response, compiledQuery.getHighlightField(), compiledQuery.getProjection());
         }
 
         return null;
     }
 
+    /**
+     * 异步执行预编译查询, 在 ClientExecutor 上运行(虚拟线程或平台线程池)
+     * @param compiledQuery 预编译的查询结构
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param values 查询值, 顺序与编译时的 matchFields 一致
+     * @return 结果集
+     */
+    public static CompletableFuture<List<Map<String, Object>>> searchDocumentAsync(CompiledQuery compiledQuery, long startTime, long endTime, String... values){
+        return executor.submit(() -> searchDocument(compiledQuery, startTime, endTime, values));
+    }
+
+    /**
+     * 异步根据id获取document
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param id id
+     * @return _source数据
+     */
+    public static CompletableFuture<String> getDocumentByIdAsync(String indexName, String typeName, String id){
+        return executor.submit(() -> getDocumentById(indexName, typeName, id));
+    }
+
+    /**
+     * 统计符合条件的document数量, 不取文档(size=0), 结果可以命中分片的请求缓存
+     * @param indexes 索引
+     * @param types 类型
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param matchMap 查询条件
+     * @param matchPhrase true 使用短语精准匹配
+     * @return 数量
+     */
+    public static long countDocument(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap, boolean matchPhrase){
+        SearchResponse response = executeSearch(countRequest(indexes, types, startTime, endTime, matchMap, matchPhrase, false));
+        return response.getHits().totalHits();
+    }
+
+    /**
+     * 判断是否存在符合条件的document, 每个分片找到一条就停止(terminate_after=1)
+     * @param indexes 索引
+     * @param types 类型
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param matchMap 查询条件
+     * @param matchPhrase true 使用短语精准匹配
+     * @return true/false
+     */
+    public static boolean existsDocument(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap, boolean matchPhrase){
+        SearchResponse response = executeSearch(countRequest(indexes, types, startTime, endTime, matchMap, matchPhrase, true));
+        return response.getHits().totalHits() > 0;
+    }
+
+    /**
+     * 输入提示, 使用completion suggester, 按前缀在内存里的FST上查找, 不扫描倒排索引
+     * @param indexes 索引
+     * @param field completion类型的字段
+     * @param prefix 前缀
+     * @param size 返回条数
+     * @return 去重后的提示词
+     */
+    public static List<String> suggestCompletion(String indexes, String field, String prefix, int size){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .size(0)
+                .fetchSource(false)
+                .suggest(new SuggestBuilder().addSuggestion(field, SuggestBuilders.completionSuggestion(field).prefix(prefix).size(size)));
+
+        SearchResponse response = executeSearch(new SearchRequest(indexes.split(","), sourceBuilder));
+
+        Set<String> texts = new LinkedHashSet<>();
+        if (response.getSuggest() != null){
+            CompletionSuggestion suggestion = response.getSuggest().getSuggestion(field);
+            for (CompletionSuggestion.Entry.Option option : suggestion.getOptions()) {
+                texts.add(option.getText().string());
+            }
+        }
+        return new ArrayList<>(texts);
+    }
+
+    /**
+     * 按写入时间顺序读取新增/更新的document, 排序为 [timeField, _uid], 用 search_after 翻页,
+     * 同一毫秒写入的document按 _uid 排列, 批次边界落在相同时间上也不会重复或遗漏
+     * @param indexes 索引
+     * @param types 类型
+     * @param timeField 写入时间字段(epoch_millis)
+     * @param after 上次读到的位置, 为空从头读
+     * @param upTo 只读写入时间不超过这个值的document
+     * @param size 条数
+     * @return 按写入时间排好序的document
+     */
+    public static List<ChangeEvent> searchChanges(String indexes, String types, String timeField, Checkpoint after, long upTo, int size){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(QueryBuilders.rangeQuery(timeField).format("epoch_millis").gte(after == null ? 0 : after.getProcessTime()).lte(upTo))
+                .sort(timeField, SortOrder.ASC)
+                .sort("_uid", SortOrder.ASC)
+                .version(true)
+                .size(size);
+        if (after != null){
+            sourceBuilder.searchAfter(new Object[]{after.getProcessTime(), after.getUid()});
+        }
+
+        SearchRequest searchRequest = new SearchRequest(indexes.split(","), sourceBuilder);
+        if (StringUtils.isNotEmpty(types)){
+            searchRequest.types(types.split(","));
+        }
+
+        SearchResponse response = executeSearch(searchRequest);
+        List<ChangeEvent> events = new ArrayList<>(response.getHits().getHits().length);
+        for (SearchHit hit : response.getHits().getHits()) {
+            long processTime = ((Number) hit.getSortValues()[0]).longValue();
+            events.add(new ChangeEvent(hit.getIndex(), hit.getType(), hit.getId(), hit.getVersion(), processTime, hit.getSource()));
+        }
+        return events;
+    }
+
+    /**
+     * 只要数量的请求
+     * @param terminateEarly true 每个分片找到一条就停止
+     */
+    static SearchRequest countRequest(String indexes, String types, long startTime, long endTime, Map<String,String> matchMap, boolean matchPhrase,
+                                      boolean terminateEarly){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(boolQuery(QueryBuilders.boolQuery(), startTime, endTime, matchMap == null ? Collections.emptyMap() : matchMap, matchPhrase))
+                .size(0);
+        if (terminateEarly){
+            sourceBuilder.terminateAfter(1);
+        }
+
+        SearchRequest searchRequest = new SearchRequest(indexes.split(","), sourceBuilder)
+                .requestCache(true)
+                .routing(searchRouting(indexes, types, matchMap));
+        if (StringUtils.isNotEmpty(types)){
+            searchRequest.types(types.split(","));
+        }
+        return searchRequest;
+    }
+
+    /**
+     * 在 ClientExecutor 上异步执行任意一组es调用
+     * @param call 调用
+     * @param <T> 返回值类型
+     * @return 结果
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> call){
+        return executor.submit(call);
+    }
+
     /**
      * 分页查询
      * @param indexes 索引
@@ -360,9 +861,8 @@ public class ElasticsearchUtils {
         searchRequestBuilder.setSearchType(SearchType.QUERY_THEN_FETCH);
 
         // 设置需要显示的字段
-        if (StringUtils.isNotEmpty(fields)){
-            searchRequestBuilder.setFetchSource(fields.split(","), null);
-        }
+        FieldProjection projection = FieldProjection.source(fields);
+        projection.apply(searchRequestBuilder);
 
         // 设置排序字段
         if (StringUtils.isNotEmpty(sortField)){
@@ -392,9 +892,7 @@ public class ElasticsearchUtils {
         log.info("请求体:{}", searchRequestBuilder);
 
         // 发送请求,执行查询
-        SearchResponse response = searchRequestBuilder
-                .execute()
-                .actionGet();
+        SearchResponse response = executeSearch(searchRequestBuilder.request());
 
         long totalHits = response.getHits().totalHits();
         long length = response.getHits().getHits().length;
@@ -403,7 +901,7 @@ public class ElasticsearchUtils {
 
         if (response.status().getStatus() == 200){
             // 解析查询对象
-            List<Map<String,Object>> rList = setSearchResponse(response, highlightField);
+            List<Map<String,Object>> rList = setSearchResponse(response, highlightField, projection);
 
             return new PageVO(pageNum, pageSize, (int) totalHits, rList);
         }
@@ -418,17 +916,31 @@ public class ElasticsearchUtils {
      * @return 结果
      */
     public static List<Map<String,Object>> setSearchResponse(SearchResponse searchResponse, String highlightField){
+        return setSearchResponse(searchResponse, highlightField, FieldProjection.all());
+    }
+
+    /**
+     * 高亮结果集 特殊处理
+     * @param searchResponse 查询返回结果
+     * @param highlightField 高亮字段
+     * @param projection 返回字段的投影方式
+     * @return 结果
+     */
+    public static List<Map<String,Object>> setSearchResponse(SearchResponse searchResponse, String highlightField, FieldProjection projection){
+        long start = System.nanoTime();
         List<Map<String,Object>> sourceList = new ArrayList<>();
         StringBuilder stringBuilder = new StringBuilder();
 
         // 循环查询结果
         for (SearchHit searchHitFields : searchResponse.getHits().getHits()) {
+            Map<String,Object> source = projection.extract(searchHitFields);
+
             // 把id放到_source里面去
-            searchHitFields.getSource().put("id", searchHitFields.getId());
+            source.put("id", searchHitFields.getId());
 
             // 有高亮字段的话做处理
             if (StringUtils.isNotEmpty(highlightField)){
-                log.info("遍历高亮结果集,覆盖正常结果集...{}", searchHitFields.getSource());
+                log.info("遍历高亮结果集,覆盖正常结果集...{}", source);
 
                 Text[] texts = searchHitFields.getHighlightFields().get(highlightField).getFragments();
 
@@ -437,13 +949,14 @@ public class ElasticsearchUtils {
                         stringBuilder.append(text.toString());
                     }
                     // 遍历高亮结果集,覆盖正常结果集
-                    searchHitFields.getSource().put(highlightField, stringBuilder.toString());
+                    source.put(highlightField, stringBuilder.toString());
                 }
             }
 
-            sourceList.add(searchHitFields.getSource());
+            sourceList.add(source);
         }
 
+        profiler.recordMapping(System.nanoTime() - start);
         return sourceList;
     }
 
@@ -506,4 +1019,137 @@ public class ElasticsearchUtils {
 
         return searchRequestBuilder;
     }
+
+    /**
+     * 按type声明的路由字段从数据里取routing
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param source 数据
+     * @return routing, 没有声明路由字段或者数据里没有这个字段返回null
+     */
+    public static String routingOf(String indexName, String typeName, BytesReference source){
+        String field = schema == null ? null : schema.routingField(indexName, typeName);
+        if (field == null){
+            return null;
+        }
+        return routingOf(indexName, typeName, XContentHelper.convertToMap(source, false).v2());
+    }
+
+    /**
+     * 按type声明的路由字段从数据里取routing
+     * @param indexName 索引名称
+     * @param typeName 类型名称
+     * @param source 数据
+     * @return routing, 没有声明路由字段或者数据里没有这个字段返回null
+     */
+    public static String routingOf(String indexName, String typeName, Map<String, Object> source){
+        String field = schema == null ? null : schema.routingField(indexName, typeName);
+        Object value = field == null ? null : source.get(field);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 查询条件里包含所有type共同的路由字段时, 用条件的值作为routing
+     */
+    private static String searchRouting(String indexes, String types, Map<String, String> matchMap){
+        if (schema == null || matchMap == null || matchMap.isEmpty()){
+            return null;
+        }
+        String field = schema.routingField(indexes.split(","), StringUtils.isNotEmpty(types) ? types.split(",") : null);
+        if (field == null || StringUtils.isBlank(matchMap.get(field))){
+            return null;
+        }
+        return matchMap.get(field);
+    }
+
+    /**
+     * 声明了路由字段(_routing必填)的type, 在发出请求之前检查routing, 不等es返回 RoutingMissingException
+     */
+    private static void requireRouting(String indexName, String typeName, String routing){
+        String field = schema == null ? null : schema.routingField(indexName, typeName);
+        if (field != null && StringUtils.isEmpty(routing)){
+            throw new IllegalArgumentException("[" + indexName + "/" + typeName + "] is routed by [" + field + "], routing is required");
+        }
+    }
+
+    /**
+     * 通知写入回调, 回调失败不影响写入结果
+     */
+    private static void notifyIndexed(String indexName, String typeName, String id, BytesReference source){
+        for (DocumentWriteListener listener : writeListeners) {
+            try {
+                listener.onIndexed(indexName, typeName, id, source);
+            } catch (Exception e){
+                log.error("document写入回调失败 {}/{}/{}", indexName, typeName, id, e);
+            }
+        }
+    }
+
+    private static void notifyDeleted(String indexName, String typeName, String id){
+        for (DocumentWriteListener listener : writeListeners) {
+            try {
+                listener.onDeleted(indexName, typeName, id);
+            } catch (Exception e){
+                log.error("document删除回调失败 {}/{}/{}", indexName, typeName, id, e);
+            }
+        }
+    }
+
+    /**
+     * 执行查询, 所有读请求都从这里发出, 由 ReplicaRouter 选择节点, 超时/重试/熔断由 ResilientExecutor 处理,
+     * 并发数由自适应限制控制, 发送前检查预计的响应体积
+     * @param searchRequest 查询请求
+     * @return 查询结果
+     */
+    private static SearchResponse executeSearch(SearchRequest searchRequest){
+        payload.check(searchRequest);
+        SearchRequest request = searchRequest.source() != null && profiler.sample() ? profiledCopy(searchRequest) : searchRequest;
+
+        long start = System.nanoTime();
+        SearchResponse response = send(request);
+        payload.record(request, response);
+
+        if (profiler.record(request, response, System.nanoTime() - start) && searchRequest.source() != null){
+            // 没有抽中的慢查询, 在后台带上profile再执行一次, 调用方不用等
+            SearchRequest reprofile = profiledCopy(searchRequest);
+            executor.submit(() -> {
+                long reprofileStart = System.nanoTime();
+                return profiler.record(reprofile, send(reprofile), System.nanoTime() - reprofileStart);
+            }).exceptionally(e -> {
+                log.warn("慢查询profile失败:{}", e.getMessage());
+                return false;
+            });
+        }
+        return response;
+    }
+
+    /**
+     * 带上profile的请求副本, 调用方的请求不变(调用方可能还在使用, 后台profile和调用方也不共享同一个对象)
+     * @param searchRequest 查询请求, source不能为null
+     * @return 新的请求
+     */
+    private static SearchRequest profiledCopy(SearchRequest searchRequest){
+        SearchSourceBuilder source = searchRequest.source().copyWithNewSlice(searchRequest.source().slice()).profile(true);
+        return new SearchRequest(searchRequest.indices(), source)
+                .types(searchRequest.types())
+                .routing(searchRequest.routing())
+                .preference(searchRequest.preference())
+                .searchType(searchRequest.searchType())
+                .requestCache(searchRequest.requestCache())
+                .indicesOptions(searchRequest.indicesOptions());
+    }
+
+    private static SearchResponse send(SearchRequest searchRequest){
+        return resilience.execute(Operation.SEARCH, timeout -> limiters.search()
+                .execute(() -> router.search(searchRequest, timeout), limiters.getAcquireTimeoutMillis()));
+    }
+
+    /**
+     * 执行get, 由 ReplicaRouter 选择节点
+     * @param getRequest get请求
+     * @return get结果
+     */
+    private static GetResponse executeGet(GetRequest getRequest){
+        return resilience.execute(Operation.GET, timeout -> router.get(getRequest, timeout));
+    }
 }
@@ -0,0 +1,167 @@
+package com.demo.elasticsearch.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 11:24 2026/10/19
+ * @Description 返回字段的投影方式:
+ * 1. SOURCE: 从_source里按includes/excludes过滤, 不传返回全部
+ * 2. DOC_VALUES: 从正排索引(doc_values)取值, 不读_source, 适合列表页只要几个数值/keyword字段的场景
+ * 3. STORED: 取单独存储(store: true)的字段, 不读_source
+ */
+public final class FieldProjection {
+
+    public enum Mode {
+        SOURCE, DOC_VALUES, STORED
+    }
+
+    private static final String[] EMPTY = new String[0];
+
+    private static final FieldProjection ALL = new FieldProjection(Mode.SOURCE, null, null);
+
+    private final Mode mode;
+
+    private final String[] fields;
+
+    private final String[] excludes;
+
+    /**
+     * SOURCE模式下的_source过滤, 不可变, 多次请求共享
+     */
+    private final FetchSourceContext sourceContext;
+
+    private FieldProjection(Mode mode, String[] fields, String[] excludes) {
+        this.mode = mode;
+        this.fields = fields == null ? EMPTY : fields;
+        this.excludes = excludes == null ? EMPTY : excludes;
+
+        if (mode == Mode.SOURCE && (this.fields.length > 0 || this.excludes.length > 0)){
+            this.sourceContext = new FetchSourceContext(true, this.fields, this.excludes);
+        } else {
+            this.sourceContext = null;
+        }
+    }
+
+    /**
+     * @return 返回完整的_source
+     */
+    public static FieldProjection all(){
+        return ALL;
+    }
+
+    /**
+     * @param fields 逗号分隔的字段, 为空返回完整的_source
+     * @return _source过滤
+     */
+    public static FieldProjection source(String fields){
+        return StringUtils.isEmpty(fields) ? ALL : new FieldProjection(Mode.SOURCE, fields.split(","), null);
+    }
+
+    /**
+     * @param includes 包含的字段, 支持通配符
+     * @param excludes 排除的字段, 支持通配符
+     * @return _source过滤
+     */
+    public static FieldProjection source(String[] includes, String[] excludes){
+        return new FieldProjection(Mode.SOURCE, includes, excludes);
+    }
+
+    /**
+     * @param fields 有doc_values的字段(数值/日期/keyword)
+     * @return 正排索引取值
+     */
+    public static FieldProjection docValues(String... fields){
+        return new FieldProjection(Mode.DOC_VALUES, fields, null);
+    }
+
+    /**
+     * @param fields store为true的字段
+     * @return 存储字段取值
+     */
+    public static FieldProjection storedFields(String... fields){
+        return new FieldProjection(Mode.STORED, fields, null);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 设置到请求体上
+     * @param sourceBuilder sourceBuilder
+     */
+    public void apply(SearchSourceBuilder sourceBuilder){
+        switch (mode){
+            case DOC_VALUES:
+                sourceBuilder.fetchSource(false);
+                for (String field : fields) {
+                    sourceBuilder.docValueField(field);
+                }
+                break;
+            case STORED:
+                sourceBuilder.fetchSource(false);
+                sourceBuilder.storedFields(Arrays.asList(fields));
+                break;
+            default:
+                if (sourceContext != null){
+                    sourceBuilder.fetchSource(sourceContext);
+                }
+        }
+    }
+
+    /**
+     * 设置到请求上
+     * @param searchRequestBuilder searchRequestBuilder
+     */
+    public void apply(SearchRequestBuilder searchRequestBuilder){
+        switch (mode){
+            case DOC_VALUES:
+                searchRequestBuilder.setFetchSource(false);
+                for (String field : fields) {
+                    searchRequestBuilder.addDocValueField(field);
+                }
+                break;
+            case STORED:
+                searchRequestBuilder.setFetchSource(false);
+                searchRequestBuilder.storedFields(fields);
+                break;
+            default:
+                if (sourceContext != null){
+                    searchRequestBuilder.setFetchSource(fields, excludes);
+                }
+        }
+    }
+
+    /**
+     * 把一条命中结果转成 field -> value, 多值字段返回List
+     * @param hit 命中结果
+     * @return 数据
+     */
+    public Map<String, Object> extract(SearchHit hit){
+        if (mode == Mode.SOURCE){
+            Map<String, Object> source = hit.getSource();
+            return source == null ? new HashMap<>() : source;
+        }
+
+        Map<String, Object> values = new HashMap<>(fields.length + 1);
+        for (SearchHitField hitField : hit.getFields().values()) {
+            if (hitField.isMetadataField()){
+                continue;
+            }
+            List<Object> fieldValues = hitField.getValues();
+            values.put(hitField.getName(), fieldValues.size() == 1 ? fieldValues.get(0) : fieldValues);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,63 @@
+package com.demo.elasticsearch.util;
+
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * @author agent
+ * @date Create in 11:59 2026/10/19
+ * @Description 按时间递增的id(Flake): 6字节毫秒时间戳 + 6字节进程随机数 + 3字节序号, base64url编码为20个字符
+ * 时间戳在最前面, 相近时间写入的id有很长的公共前缀, lucene的词典按前缀压缩, 查找id(版本检查)时命中的块也集中, 比随机UUID写入快
+ */
+public class FlakeIdGenerator implements IdGenerator {
+
+    private static final int SEQUENCE_MASK = 0xFFFFFF;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final byte[] node = new byte[6];
+
+    private long lastTimestamp;
+
+    private int sequence;
+
+    public FlakeIdGenerator() {
+        new SecureRandom().nextBytes(node);
+        sequence = new SecureRandom().nextInt() & SEQUENCE_MASK;
+    }
+
+    @Override
+    public String nextId(BytesReference source){
+        return nextId();
+    }
+
+    /**
+     * @return 下一个id
+     */
+    public String nextId(){
+        long timestamp;
+        int seq;
+        synchronized (this){
+            // 时钟回拨时沿用上一次的时间戳, 保证递增
+            timestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+            seq = sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (seq == 0){
+                // 一毫秒内序号用完, 借用下一毫秒
+                timestamp++;
+            }
+            lastTimestamp = timestamp;
+        }
+
+        byte[] bytes = new byte[15];
+        for (int i = 0; i < 6; i++) {
+            bytes[i] = (byte) (timestamp >>> (8 * (5 - i)));
+        }
+        System.arraycopy(node, 0, bytes, 6, 6);
+        bytes[12] = (byte) (seq >>> 16);
+        bytes[13] = (byte) (seq >>> 8);
+        bytes[14] = (byte) seq;
+        return ENCODER.encodeToString(bytes);
+    }
+}
@@ -0,0 +1,108 @@
+package com.demo.elasticsearch.util;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author agent
+ * @date Create in 12:07 2026/10/19
+ * @Description 不转成Java对象的命中结果输出: _source 保持响应里的原始字节(BytesReference), 直接拷贝到输出流,
+ * 不经过 getSourceAsString/getSource 生成String和Map. 输出用的json生成器的缓冲区由jackson按线程回收复用
+ */
+public final class HitStreamer {
+
+    /**
+     * 遍历命中结果的原始_source
+     */
+    @FunctionalInterface
+    public interface SourceVisitor {
+
+        /**
+         * @param hit 命中结果, 只读取元数据(id/type/score)时不会解析_source
+         * @param source _source的原始字节, 是响应缓冲区上的视图, 不要在回调之外保存
+         */
+        void visit(SearchHit hit, BytesReference source) throws IOException;
+    }
+
+    private HitStreamer() {
+    }
+
+    /**
+     * 遍历命中结果, 不拷贝_source
+     * @param response 查询结果
+     * @param visitor 回调
+     */
+    public static void forEachSource(SearchResponse response, SourceVisitor visitor) throws IOException {
+        for (SearchHit hit : response.getHits().getHits()) {
+            visitor.visit(hit, hit.getSourceRef());
+        }
+    }
+
+    /**
+     * 把命中结果写到输出流: {"total":N,"hits":[{"_index":..,"_type":..,"_id":..,"_score":..,"_source":{原始json}}]}
+     * 输出流不会被关闭
+     * @param response 查询结果
+     * @param out 输出流
+     * @return 写出的条数
+     */
+    public static int writeHits(SearchResponse response, OutputStream out) throws IOException {
+        SearchHit[] hits = response.getHits().getHits();
+        try (XContentBuilder builder = XContentFactory.jsonBuilder(new NonClosingOutputStream(out))) {
+            builder.startObject()
+                    .field("total", response.getHits().getTotalHits())
+                    .startArray("hits");
+            for (SearchHit hit : hits) {
+                builder.startObject()
+                        .field("_index", hit.getIndex())
+                        .field("_type", hit.getType())
+                        .field("_id", hit.getId());
+                if (!Float.isNaN(hit.getScore())){
+                    builder.field("_score", hit.getScore());
+                }
+                if (hit.getSourceRef() != null){
+                    builder.rawField("_source", hit.getSourceRef());
+                }
+                builder.endObject();
+            }
+            builder.endArray().endObject();
+        }
+        return hits.length;
+    }
+
+    /**
+     * 把一个document的_source原样写到输出流, 输出流不会被关闭
+     * @param source _source的原始字节
+     * @param out 输出流
+     */
+    public static void writeSource(BytesReference source, OutputStream out) throws IOException {
+        source.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * 关闭json生成器时归还缓冲区, 但不关闭调用方的输出流
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.demo.elasticsearch.util;
+
+import org.elasticsearch.common.bytes.BytesReference;
+
+/**
+ * @author agent
+ * @date Create in 11:59 2026/10/19
+ * @Description 客户端生成document id, 写入前就确定id, 超时重试时不会产生重复的document
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    /**
+     * 不在客户端生成, 由es生成id(重试可能重复写入)
+     */
+    IdGenerator SERVER = source -> null;
+
+    /**
+     * @param source 要写入的数据, 只有按内容生成id时才会用到
+     * @return id, 返回null表示由es生成
+     */
+    String nextId(BytesReference source);
+
+    /**
+     * @param strategy flake 按时间递增 / hash 按内容 / server 由es生成
+     * @return IdGenerator
+     */
+    static IdGenerator of(String strategy){
+        switch (strategy){
+            case "flake":
+                return new FlakeIdGenerator();
+            case "hash":
+                return new ContentHashIdGenerator();
+            case "server":
+                return SERVER;
+            default:
+                throw new IllegalArgumentException("unknown id strategy [" + strategy + "], expected flake, hash or server");
+        }
+    }
+}
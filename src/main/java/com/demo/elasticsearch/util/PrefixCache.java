@@ -0,0 +1,197 @@
+package com.demo.elasticsearch.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @date Create in 11:44 2026/10/19
+ * @Description 按前缀缓存输入提示的字典树, 查找只需要沿着前缀的字符往下走
+ * 1. 条目数超过上限时淘汰命中次数最少的一半, 剩下的命中次数减半, 留下的是最近最热的前缀
+ * 2. 数据变化时按文本失效, 文本的每一个前缀上的条目都会被清掉, 空出来的节点一并删除
+ * 3. 加载时间不晚于最近一次失效的结果不再写入, 失效前就发出的后台刷新不会把旧值放回来
+ * 线程安全, 所有操作都在一把锁内完成, 单次操作是微秒级
+ */
+public final class PrefixCache {
+
+    private final int maxEntries;
+
+    private final Node root = new Node(null, '\0');
+
+    private int entries;
+
+    /**
+     * 最近一次失效的时间
+     */
+    private long invalidatedAt;
+
+    public PrefixCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param prefix 前缀
+     * @return 缓存的条目, 没有返回null
+     */
+    public synchronized Entry get(String prefix){
+        Node node = find(prefix);
+        if (node == null || node.entry == null){
+            return null;
+        }
+        node.entry.hits++;
+        return node.entry;
+    }
+
+    /**
+     * @param prefix 前缀
+     * @param values 提示词
+     * @param loadedAt 加载时间, 取发起查询的时间; 不晚于最近一次失效时丢弃, 查询期间可能已经失效
+     */
+    public synchronized void put(String prefix, List<String> values, long loadedAt){
+        if (loadedAt <= invalidatedAt){
+            return;
+        }
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            Node parent = node;
+            node = parent.children.computeIfAbsent(c, k -> new Node(parent, c));
+        }
+
+        long hits = 1;
+        if (node.entry != null){
+            hits = node.entry.hits;
+        } else {
+            entries++;
+        }
+        node.entry = new Entry(values, loadedAt, hits);
+
+        if (entries > maxEntries){
+            evict();
+        }
+    }
+
+    /**
+     * 文本有变化(新增/删除了这个提示词), 失效它所有前缀上的条目
+     * @param text 提示词
+     */
+    public synchronized void invalidate(String text){
+        invalidatedAt = System.currentTimeMillis();
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            Node child = node.children.get(text.charAt(i));
+            if (child == null){
+                break;
+            }
+            node = child;
+            if (node.entry != null){
+                node.entry = null;
+                entries--;
+            }
+        }
+        prune(node);
+    }
+
+    public synchronized void clear(){
+        invalidatedAt = System.currentTimeMillis();
+        root.children.clear();
+        entries = 0;
+    }
+
+    public synchronized int size(){
+        return entries;
+    }
+
+    private Node find(String prefix){
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private void evict(){
+        List<Node> nodes = new ArrayList<>(entries);
+        collect(root, nodes);
+
+        long[] hits = new long[nodes.size()];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = nodes.get(i).entry.hits;
+        }
+        Arrays.sort(hits);
+        long threshold = hits[hits.length / 2];
+
+        int toRemove = nodes.size() - maxEntries / 2;
+        for (Node node : nodes) {
+            if (toRemove > 0 && node.entry.hits <= threshold){
+                node.entry = null;
+                entries--;
+                toRemove--;
+                prune(node);
+            } else {
+                node.entry.hits = Math.max(1, node.entry.hits / 2);
+            }
+        }
+    }
+
+    private static void collect(Node node, List<Node> nodes){
+        if (node.entry != null){
+            nodes.add(node);
+        }
+        for (Node child : node.children.values()) {
+            collect(child, nodes);
+        }
+    }
+
+    /**
+     * 删除没有条目也没有子节点的节点
+     */
+    private static void prune(Node node){
+        while (node.parent != null && node.entry == null && node.children.isEmpty()){
+            node.parent.children.remove(node.c);
+            node = node.parent;
+        }
+    }
+
+    private static final class Node {
+
+        private final Node parent;
+
+        private final char c;
+
+        private final Map<Character, Node> children = new HashMap<>(4);
+
+        private Entry entry;
+
+        private Node(Node parent, char c) {
+            this.parent = parent;
+            this.c = c;
+        }
+    }
+
+    public static final class Entry {
+
+        private final List<String> values;
+
+        private final long loadedAt;
+
+        private long hits;
+
+        private Entry(List<String> values, long loadedAt, long hits) {
+            this.values = values;
+            this.loadedAt = loadedAt;
+            this.hits = hits;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.demo.elasticsearch.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author agent
+ * @date Create in 12:15 2026/10/19
+ * @Description 被引用document(汽车/店铺这类数据量小、读多写少的数据)的LRU缓存, key是 index/type/id
+ * 1. 条目数超过上限时淘汰最久没有访问的
+ * 2. 超过有效期的条目当作没有缓存, 兜底没有经过本应用的修改
+ * 3. 不存在的document也缓存(空值), 避免悬空的外键每次都去查
+ * 线程安全, 所有操作都在一把锁内完成
+ */
+public final class ReferenceCache {
+
+    /**
+     * document不存在
+     */
+    public static final Map<String, Object> MISSING = Collections.emptyMap();
+
+    private final long ttlMillis;
+
+    private final Map<String, CachedRef> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries 最多缓存的条数
+     * @param ttlMillis 有效期(毫秒), 0 不过期
+     */
+    public ReferenceCache(int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, CachedRef>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRef> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static String key(String indexName, String typeName, String id){
+        return indexName + "/" + typeName + "/" + id;
+    }
+
+    /**
+     * @param key index/type/id
+     * @param now 当前时间
+     * @return 缓存的字段, document不存在返回 {@link #MISSING}, 没有缓存或已过期返回null
+     */
+    public synchronized Map<String, Object> get(String key, long now){
+        CachedRef entry = entries.get(key);
+        if (entry == null || (ttlMillis > 0 && now - entry.loadedAt >= ttlMillis)){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.source;
+    }
+
+    /**
+     * @param key index/type/id
+     * @param source 字段, document不存在传 {@link #MISSING}
+     * @param loadedAt 加载时间
+     */
+    public synchronized void put(String key, Map<String, Object> source, long loadedAt){
+        entries.put(key, new CachedRef(source == MISSING ? MISSING : Collections.unmodifiableMap(source), loadedAt));
+    }
+
+    /**
+     * document有修改/删除
+     * @param key index/type/id
+     */
+    public synchronized void invalidate(String key){
+        entries.remove(key);
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class CachedRef {
+
+        private final Map<String, Object> source;
+
+        private final long loadedAt;
+
+        CachedRef(Map<String, Object> source, long loadedAt) {
+            this.source = source;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.demo.elasticsearch.util;
+
+import com.demo.elasticsearch.model.FederatedSearchResult;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @author agent
+ * @date Create in 12:11 2026/10/19
+ * @Description 合并多个集群的查询结果
+ * 每个集群返回的是自己的前 from + size 条, 已经排好序, 这里做k路归并取全局的 [from, from + size):
+ * 有排序字段按 sort values 比较(缺失的值排在最后), 没有按分数倒序, 相同时按集群顺序
+ * 命中数相加, 聚合按类型 reduce(terms合并桶, sum相加, max取最大...), 和es合并分片结果的方式一样
+ */
+public final class SearchMerger {
+
+    private SearchMerger() {
+    }
+
+    /**
+     * @param responses 各集群的结果, 按集群顺序
+     * @param sortOrders 排序字段的方向, 没有排序字段(按分数)传空列表
+     * @param from 从第几条开始
+     * @param size 取多少条
+     * @param failures 没有返回结果的集群
+     * @return 合并结果
+     */
+    public static FederatedSearchResult merge(Map<String, SearchResponse> responses, List<SortOrder> sortOrders, int from, int size,
+                                              Map<String, String> failures){
+        Comparator<Cursor> order = comparator(sortOrders);
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(responses.size(), 1), order);
+
+        long total = 0;
+        float maxScore = Float.NaN;
+        boolean timedOut = false;
+        Map<String, Long> took = new LinkedHashMap<>();
+        List<InternalAggregations> aggregations = new ArrayList<>();
+
+        int clusterIndex = 0;
+        for (Map.Entry<String, SearchResponse> entry : responses.entrySet()) {
+            SearchResponse response = entry.getValue();
+            total += response.getHits().getTotalHits();
+            float score = response.getHits().getMaxScore();
+            if (!Float.isNaN(score) && (Float.isNaN(maxScore) || score > maxScore)){
+                maxScore = score;
+            }
+            timedOut |= response.isTimedOut();
+            took.put(entry.getKey(), response.getTookInMillis());
+            if (response.getAggregations() != null){
+                aggregations.add((InternalAggregations) response.getAggregations());
+            }
+            if (response.getHits().getHits().length > 0){
+                queue.add(new Cursor(entry.getKey(), clusterIndex, response.getHits().getHits()));
+            }
+            clusterIndex++;
+        }
+
+        List<Map<String, Object>> hits = new ArrayList<>();
+        int position = 0;
+        while (!queue.isEmpty() && hits.size() < size) {
+            Cursor cursor = queue.poll();
+            if (position++ >= from){
+                hits.add(toMap(cursor.cluster, cursor.current()));
+            }
+            if (cursor.advance()){
+                queue.add(cursor);
+            }
+        }
+
+        return new FederatedSearchResult(hits, total, maxScore, reduce(aggregations), took, failures, timedOut);
+    }
+
+    private static InternalAggregations reduce(List<InternalAggregations> aggregations){
+        if (aggregations.isEmpty()){
+            return null;
+        }
+        if (aggregations.size() == 1){
+            return aggregations.get(0);
+        }
+        // 内置的聚合合并时不需要脚本, 也不用回收内存
+        return InternalAggregations.reduce(aggregations, new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null));
+    }
+
+    private static Map<String, Object> toMap(String cluster, SearchHit hit){
+        Map<String, Object> source = hit.getSource() == null ? new HashMap<>() : new HashMap<>(hit.getSource());
+        source.put("id", hit.getId());
+        source.put("cluster", cluster);
+        return source;
+    }
+
+    private static Comparator<Cursor> comparator(List<SortOrder> sortOrders){
+        Comparator<Cursor> byHit = sortOrders.isEmpty()
+                ? (a, b) -> compareScore(a.current().getScore(), b.current().getScore())
+                : (a, b) -> compareSortValues(a.current().getSortValues(), b.current().getSortValues(), sortOrders);
+        return byHit.thenComparingInt(c -> c.clusterIndex);
+    }
+
+    /**
+     * 分数倒序, NaN排在最后
+     */
+    private static int compareScore(float a, float b){
+        if (Float.isNaN(a) || Float.isNaN(b)){
+            return Float.isNaN(a) ? (Float.isNaN(b) ? 0 : 1) : -1;
+        }
+        return Float.compare(b, a);
+    }
+
+    private static int compareSortValues(Object[] a, Object[] b, List<SortOrder> sortOrders){
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            // 和es默认的 missing: _last 一致, 不受排序方向影响
+            if (a[i] == null || b[i] == null){
+                if (a[i] != b[i]){
+                    return a[i] == null ? 1 : -1;
+                }
+                continue;
+            }
+            int result = compareValue(a[i], b[i]);
+            if (result != 0){
+                SortOrder sortOrder = i < sortOrders.size() ? sortOrders.get(i) : SortOrder.ASC;
+                return sortOrder == SortOrder.DESC ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValue(Object a, Object b){
+        if (a instanceof Number && b instanceof Number){
+            if ((a instanceof Double || a instanceof Float) || (b instanceof Double || b instanceof Float)){
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable){
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        // keyword 排序值在不同节点上可能是 String 或 Text
+        return a.toString().compareTo(b.toString());
+    }
+
+    /**
+     * 一个集群结果上的读取位置
+     */
+    private static class Cursor {
+
+        private final String cluster;
+
+        private final int clusterIndex;
+
+        private final SearchHit[] hits;
+
+        private int position;
+
+        Cursor(String cluster, int clusterIndex, SearchHit[] hits) {
+            this.cluster = cluster;
+            this.clusterIndex = clusterIndex;
+            this.hits = hits;
+        }
+
+        SearchHit current(){
+            return hits[position];
+        }
+
+        boolean advance(){
+            return ++position < hits.length;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.client.AdaptiveLimiter;
+import com.demo.elasticsearch.client.LimitExceededException;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:34 2026/10/19
+ * @Description 自适应并发限制, 不需要连接es集群
+ */
+public class AdaptiveLimiterTests {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    public void growsWhileUtilizedAndLatencyFlat(){
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 4, 1, 100, 0.9, 2.0);
+
+        for (int round = 0; round < 10; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                limiter.acquire(0);
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.onSuccess(RTT);
+            }
+        }
+
+        assertTrue("limit should grow, was " + limiter.getLimit(), limiter.getLimit() >= 8);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void backsOffOnRejection(){
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 20, 1, 100, 0.5, 2.0);
+
+        limiter.acquire(0);
+        long first = System.nanoTime();
+        limiter.acquire(0);
+        long second = System.nanoTime();
+
+        limiter.onDropped(first);
+        assertEquals(10, limiter.getLimit());
+
+        // 上次缩小之前发出的请求被拒绝, 不再缩小
+        limiter.onDropped(second);
+        assertEquals(10, limiter.getLimit());
+
+        try {
+            limiter.execute(() -> {
+                throw new EsRejectedExecutionException("rejected");
+            }, 0);
+        } catch (EsRejectedExecutionException ignored){
+        }
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test(expected = LimitExceededException.class)
+    public void rejectsLocallyWhenFull(){
+        AdaptiveLimiter limiter = AdaptiveLimiter.fixed("test", 1);
+        limiter.acquire(0);
+        limiter.acquire(10);
+    }
+
+    @Test
+    public void mixedQueryCostsDoNotLookCongested() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 10, 1, 100, 0.9, 2.0);
+        Thread.sleep(30);
+
+        // 便宜(1ms)和昂贵(20ms)的查询交替, 集群并没有变慢
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire(0);
+            limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(i % 2 == 0 ? 1 : 20));
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffWhenLatencyRises() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 10, 1, 100, 0.5, 2.0);
+        for (int i = 0; i < 500; i++) {
+            limiter.acquire(0);
+            limiter.onSuccess(RTT);
+        }
+        assertEquals(10, limiter.getLimit());
+
+        // 上次缩小(创建时)之后发出的请求才会触发缩小
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(RTT * 10) + 10);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(0);
+            limiter.onSuccess(RTT * 10);
+        }
+        assertEquals(5, limiter.getLimit());
+    }
+}
@@ -1,20 +1,45 @@
 package com.demo.elasticsearch;
 
+import com.demo.elasticsearch.client.FederatedClusters;
+import com.demo.elasticsearch.config.StartupWarmer;
+import com.demo.elasticsearch.model.FederatedSearchResult;
 import com.demo.elasticsearch.model.PageVO;
+import com.demo.elasticsearch.model.SnapshotResult;
+import com.demo.elasticsearch.service.BulkLoadService;
+import com.demo.elasticsearch.service.BulkLoadSession;
+import com.demo.elasticsearch.service.FederatedSearchService;
+import com.demo.elasticsearch.service.SnapshotService;
+import com.demo.elasticsearch.util.BulkWriter;
+import com.demo.elasticsearch.util.ContentHashIdGenerator;
 import com.demo.elasticsearch.util.ElasticsearchUtils;
+import com.demo.elasticsearch.util.FieldProjection;
+import com.demo.elasticsearch.util.FlakeIdGenerator;
+import com.demo.elasticsearch.util.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +50,24 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 @Slf4j
 public class AppTests {
 
+    @Autowired
+    private BulkLoadService bulkLoadService;
+
+    @Autowired
+    private StartupWarmer startupWarmer;
+
+    @Autowired
+    private TransportClient client;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private FederatedClusters federatedClusters;
+
+    @Autowired
+    private FederatedSearchService federatedSearchService;
+
     @Test
     public void contextLoads() {
     }
@@ -114,6 +157,31 @@ public class AppTests {
         }
     }
 
+    @Test
+    public void searchDocumentDocValues(){
+        Map<String,String> fieldMap = new HashMap<>();
+        fieldMap.put("title", "kill");
+        // 只取year, 不读_source
+        List<Map<String,Object>> lists = ElasticsearchUtils.searchDocument("movies", "movie", 0, 0, fieldMap, false, null, "year", SortOrder.DESC, 10,
+                FieldProjection.docValues("year"));
+
+        for (Map<String, Object> list : lists) {
+            log.info("id:{}, year:{}", list.get("id"), list.get("year"));
+        }
+    }
+
+    @Test
+    public void countDocument(){
+        Map<String,String> fieldMap = new HashMap<>();
+        fieldMap.put("title", "kill");
+
+        long count = ElasticsearchUtils.countDocument("movies", "movie", 0, 0, fieldMap, false);
+        boolean exists = ElasticsearchUtils.existsDocument("movies", "movie", 0, 0, fieldMap, false);
+        log.info("count:{}, exists:{}", count, exists);
+
+        Assert.assertEquals(count > 0, exists);
+    }
+
     @Test
     public void searchDocumentPage(){
         Map<String,String> fieldMap = new HashMap<>();
@@ -135,6 +203,50 @@ public class AppTests {
         }
     }
 
+    @Test
+    public void bulkLoad() throws IOException {
+        try (BulkLoadSession session = bulkLoadService.open("my_index", "my_type")) {
+            for (int i = 0; i < 10000; i++) {
+                session.add(String.valueOf(i), jsonBuilder()
+                        .startObject()
+                        .field("name", "user" + i)
+                        .field("age", i % 100)
+                        .field("date", "2018-01-01")
+                        .endObject());
+            }
+        }
+    }
+
+    /**
+     * 不同id生成方式的写入速度: 随机UUID / 按时间递增 / 按内容 / es生成
+     */
+    @Test
+    public void idStrategyIndexingRate() throws IOException {
+        Map<String, IdGenerator> strategies = new LinkedHashMap<>();
+        strategies.put("random", source -> UUIDs.randomBase64UUID());
+        strategies.put("flake", new FlakeIdGenerator());
+        strategies.put("hash", new ContentHashIdGenerator());
+        strategies.put("server", IdGenerator.SERVER);
+
+        for (Map.Entry<String, IdGenerator> strategy : strategies.entrySet()) {
+            String index = "id_bench_" + strategy.getKey();
+            ElasticsearchUtils.createIndex(index);
+
+            BulkWriter writer = new BulkWriter(client, 1000, 2, false);
+            for (int i = 0; i < 200000; i++) {
+                XContentBuilder source = jsonBuilder()
+                        .startObject()
+                        .field("name", "user" + i)
+                        .field("age", i % 100)
+                        .endObject();
+                writer.add(new IndexRequest(index, "my_type", strategy.getValue().nextId(source.bytes())).source(source));
+            }
+            writer.close();
+
+            log.info("id生成方式[{}] 写入速度[{}]条/秒, 失败[{}]", strategy.getKey(), writer.docsPerSecond(), writer.getFailures());
+            ElasticsearchUtils.deleteIndex(index);
+        }
+    }
 
     @Test
     public void test() throws IOException {
@@ -145,4 +257,49 @@ public class AppTests {
                         .endObject())
                 .upsert();
     }
+
+    @Test
+    public void warmUp() throws InterruptedException {
+        Assert.assertTrue(startupWarmer.awaitReady(60000));
+        log.info("{}", startupWarmer.health().getDetails());
+    }
+
+    /**
+     * 本地单节点需要在 elasticsearch.yml 里配置 path.repo: ["/usr/share/elasticsearch/backup"]
+     */
+    @Test
+    public void snapshotAndVerify() throws IOException {
+        bulkLoad();
+        SnapshotResult first = snapshotService.snapshot("my_index");
+        SnapshotResult second = snapshotService.snapshot("my_index");
+        log.info("全量[{}]字节, 增量[{}]字节", first.getBytes(), second.getBytes());
+
+        for (Map.Entry<String, long[]> entry : snapshotService.verify(second.getName()).entrySet()) {
+            log.info("{} 线上[{}]条, 快照[{}]条", entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            Assert.assertEquals(entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * 本地单节点当作两个区域的集群, 每个区域的数据都算一次
+     */
+    @Test
+    public void federatedSearch() throws IOException {
+        bulkLoad();
+        federatedClusters.register("region-a", client, TimeValue.timeValueSeconds(5));
+        federatedClusters.register("region-b", client, TimeValue.timeValueSeconds(5));
+
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(QueryBuilders.matchAllQuery())
+                .sort("age", SortOrder.DESC)
+                .aggregation(AggregationBuilders.count("count").field("age"))
+                .size(10);
+        FederatedSearchResult result = federatedSearchService.search("my_index", null, source, Arrays.asList("region-a", "region-b"));
+
+        long single = ElasticsearchUtils.countDocument("my_index", null, 0, 0, new HashMap<>(), false);
+        Assert.assertEquals(single * 2, result.getTotal());
+        Assert.assertEquals(single * 2, ((ValueCount) result.getAggregations().get("count")).getValue());
+        Assert.assertTrue(result.isComplete());
+        log.info("各集群耗时:{}, 第一页:{}", result.getTook(), result.getHits());
+    }
 }
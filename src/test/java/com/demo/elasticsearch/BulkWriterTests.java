@@ -0,0 +1,89 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.BulkWriter;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * @author agent
+ * @date Create in 11:36 2026/10/19
+ * @Description 批量写入按条数和字节数拆批、重新发送被拒绝的条目, 不需要连接es集群
+ */
+public class BulkWriterTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void splitsByBytes(){
+        List<BulkRequest> sent = new ArrayList<>();
+        Client client = Mockito.mock(Client.class);
+        Mockito.doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            ((ActionListener<BulkResponse>) invocation.getArgument(1)).onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any(ActionListener.class));
+
+        String value = String.join("", Collections.nCopies(1000, "x"));
+        try (BulkWriter writer = new BulkWriter(client, 1000, 10_000, 1, null, false)) {
+            for (int i = 0; i < 50; i++) {
+                writer.add(new IndexRequest("index", "type", String.valueOf(i)).source("field", value));
+            }
+        }
+
+        int actions = 0;
+        for (BulkRequest request : sent) {
+            assertTrue("bulk of " + request.estimatedSizeInBytes() + " bytes", request.estimatedSizeInBytes() <= 10_000);
+            actions += request.numberOfActions();
+        }
+        assertEquals(50, actions);
+        assertTrue(sent.size() >= 5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void resendsRejectedItems(){
+        List<BulkRequest> sent = new ArrayList<>();
+        Client client = Mockito.mock(Client.class);
+        Mockito.doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            sent.add(request);
+            // 第一次拒绝第2条, 重新发送时全部成功
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                IndexRequest indexRequest = (IndexRequest) request.requests().get(i);
+                items[i] = sent.size() == 1 && i == 1
+                        ? new BulkItemResponse(i, "index", new BulkItemResponse.Failure("index", "type", indexRequest.id(), new EsRejectedExecutionException("rejected")))
+                        : new BulkItemResponse(i, "index", new IndexResponse(new ShardId("index", "_na_", 0), "type", indexRequest.id(), 1, true));
+            }
+            ((ActionListener<BulkResponse>) invocation.getArgument(1)).onResponse(new BulkResponse(items, 1));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any(ActionListener.class));
+
+        BulkWriter writer = new BulkWriter(client, 3, 1, false);
+        for (int i = 0; i < 3; i++) {
+            writer.add(new IndexRequest("index", "type", String.valueOf(i)).source("field", i));
+        }
+        writer.close();
+
+        assertEquals(2, sent.size());
+        assertEquals("1", ((IndexRequest) sent.get(1).requests().get(0)).id());
+        assertEquals(3, writer.getDocs());
+        assertEquals(0, writer.getFailures());
+    }
+}
@@ -1,5 +1,12 @@
 package com.demo.elasticsearch;
 
+import com.demo.elasticsearch.model.SavedSearchMatch;
+import com.demo.elasticsearch.service.AutocompleteService;
+import com.demo.elasticsearch.service.EnrichmentService;
+import com.demo.elasticsearch.service.IndexMigrationService;
+import com.demo.elasticsearch.service.SavedSearchListener;
+import com.demo.elasticsearch.service.SavedSearchService;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.search.TermQuery;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -12,10 +19,12 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.DistanceUnit;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -25,10 +34,13 @@ import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.script.mustache.SearchTemplateRequestBuilder;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.IOException;
@@ -36,7 +48,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
@@ -53,6 +68,18 @@ public class CarShopTests {
     @Autowired
     private TransportClient client;
 
+    @Autowired
+    private IndexMigrationService indexMigrationService;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private SavedSearchService savedSearchService;
+
+    @Autowired
+    private EnrichmentService enrichmentService;
+
     /**
      * 需求: 调整宝马320这个汽车的售价，我们希望将售价设置为32万，用一个upsert语法，如果这个汽车的信息之前不存在，那么就insert，如果存在，那么就update
      */
@@ -110,6 +137,7 @@ public class CarShopTests {
 
         // index操作,添加一条销售记录进去
         IndexRequestBuilder indexRequestBuilder = client.prepareIndex("car_shop", "sales", "3")
+                .setRouting("1")
                 .setSource(jsonBuilder()
                     .startObject()
                         .field("brand", "奔驰")
@@ -118,11 +146,13 @@ public class CarShopTests {
                         .field("produce_date", "2017-01-05")
                         .field("sale_price", 340000)
                         .field("sale_date", "2017-02-03")
+                        .field("shop_id", "1")
                     .endObject()
                 );
 
         // update操作 更新一条id是1的数据
         UpdateRequestBuilder updateRequestBuilder = client.prepareUpdate("car_shop", "sales", "1")
+                .setRouting("1")
                 .setDoc(jsonBuilder()
                     .startObject()
                         .field("sale_price", 290000)
@@ -130,7 +160,7 @@ public class CarShopTests {
                 );
 
         // 删除操作 删除id是2的数据
-        DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete("car_shop", "sales", "2");
+        DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete("car_shop", "sales", "2").setRouting("1");
 
         // 请求都添加到bulk中
         bulkRequestBuilder.add(indexRequestBuilder)
@@ -247,6 +277,33 @@ public class CarShopTests {
         }
     }
 
+    /**
+     * 同样是"宝"开头, 用edge_ngram子字段做普通的match查询, 前缀在写入时就已经切好了
+     */
+    @Test
+    public void edgeNgramQuery(){
+        SearchResponse response = client.prepareSearch("car_shop")
+                .setTypes("cars")
+                .setQuery(QueryBuilders.matchQuery("name.autocomplete", "宝"))
+                .get();
+
+        for (SearchHit hit : response.getHits().getHits()) {
+            log.info("hit:{}", hit.getSourceAsString());
+        }
+    }
+
+    /**
+     * 输入提示, 第二次同样的前缀直接从本地缓存返回
+     */
+    @Test
+    public void autocomplete(){
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            List<String> suggestions = autocompleteService.suggest("car_shop", "suggest", "宝");
+            log.info("suggestions:{}, {}us", suggestions, (System.nanoTime() - start) / 1000);
+        }
+    }
+
     @Test
     public void boolQuery(){
         // 组装查询条件
@@ -331,4 +388,101 @@ public class CarShopTests {
             log.info("hit:{}", hit.getSourceAsString());
         }
     }
+
+    /**
+     * 需求: car_shop的mapping变了,不停止搜索的情况下迁移到新索引,完成后car_shop是指向新索引的别名
+     * 第一次迁移会删除同名的真实索引, 这里用单独的临时索引演示, 不影响car_shop
+     */
+    @Test
+    public void migrateIndex(){
+        String alias = "car_shop_migration";
+        client.prepareIndex(alias, "cars", "1")
+                .setSource("brand", "宝马", "name", "宝马320", "price", 320000)
+                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+                .get();
+
+        String newIndex = indexMigrationService.migrate(alias, Settings.EMPTY, null, null);
+        try {
+            log.info("{} -> {}", alias, newIndex);
+            Assert.assertEquals(newIndex, indexMigrationService.resolveIndex(alias));
+            Assert.assertTrue(client.prepareGet(alias, "cars", "1").get().isExists());
+        } finally {
+            ElasticsearchUtils.deleteIndex(newIndex);
+        }
+    }
+
+    /**
+     * 一个4S店的销售记录按shop_id路由到同一个分片, 按店查询只查一个分片
+     */
+    @Test
+    public void routedSales() throws IOException {
+        ElasticsearchUtils.createDocument("car_shop", "sales", "routed-1", jsonBuilder()
+                .startObject()
+                    .field("brand", "宝马")
+                    .field("name", "宝马320")
+                    .field("sale_price", 270000)
+                    .field("shop_id", "2")
+                .endObject());
+
+        log.info("get:{}", ElasticsearchUtils.getDocumentById("car_shop", "sales", "routed-1", "2"));
+
+        Map<String, String> matchMap = new HashMap<>();
+        matchMap.put("shop_id", "2");
+        log.info("shop 2 sales:{}", ElasticsearchUtils.searchDocument("car_shop", "sales", matchMap, null));
+
+        ElasticsearchUtils.deleteDocument("car_shop", "sales", "routed-1", "2");
+    }
+
+    /**
+     * 一页销售记录关联汽车和店铺, 被引用的document一次multi-get取回, 第二次全部命中缓存
+     */
+    @Test
+    public void enrichSales(){
+        Map<String, String> matchMap = new HashMap<>();
+        matchMap.put("brand", "宝马");
+        List<Map<String, Object>> sales = ElasticsearchUtils.searchDocument("car_shop", "sales", matchMap, null);
+
+        enrichmentService.enrich("car_shop", "sales", sales);
+        long misses = enrichmentService.getCache().getMisses();
+        for (Map<String, Object> sale : sales) {
+            log.info("sale[{}] car:{} shop:{}", sale.get("id"), sale.get("car"), sale.get("shop"));
+        }
+
+        enrichmentService.enrich("car_shop", "sales", ElasticsearchUtils.searchDocument("car_shop", "sales", matchMap, null));
+        Assert.assertEquals(misses, enrichmentService.getCache().getMisses());
+    }
+
+    /**
+     * 保存"30万以内的宝马", 新写入一辆宝马之后收到命中回调
+     */
+    @Test
+    public void savedSearch() throws IOException, InterruptedException {
+        String savedSearchId = savedSearchService.register("user-1", "cars", QueryBuilders.boolQuery()
+                .must(QueryBuilders.matchQuery("brand", "宝马"))
+                .filter(QueryBuilders.rangeQuery("price").lte(300000)));
+
+        ElasticsearchUtils.createDocument("car_shop", "cars", "saved-search-1", jsonBuilder()
+                .startObject()
+                    .field("brand", "宝马")
+                    .field("name", "宝马320")
+                    .field("price", 280000)
+                .endObject());
+
+        SavedSearchMatch match = MATCHES.poll(10, TimeUnit.SECONDS);
+        log.info("saved search [{}] matched:{}", savedSearchId, match == null ? null : match.getSource());
+
+        savedSearchService.unregister(savedSearchId);
+        ElasticsearchUtils.deleteDocument("car_shop", "cars", "saved-search-1");
+    }
+
+    private static final BlockingQueue<SavedSearchMatch> MATCHES = new LinkedBlockingQueue<>();
+
+    @TestConfiguration
+    static class SavedSearchConfig {
+
+        @Bean
+        public SavedSearchListener queueingListener(){
+            return MATCHES::offer;
+        }
+    }
 }
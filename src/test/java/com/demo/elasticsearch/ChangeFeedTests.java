@@ -0,0 +1,102 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.model.ChangeEvent;
+import com.demo.elasticsearch.model.Checkpoint;
+import com.demo.elasticsearch.service.ChangeFeed;
+import com.demo.elasticsearch.service.FileCheckpointStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:50 2026/10/19
+ * @Description 变更流的位置和批次边界, 用内存里的数据模拟 search_after, 不需要连接es集群
+ */
+public class ChangeFeedTests {
+
+    private static final Comparator<ChangeEvent> ORDER = Comparator.comparingLong(ChangeEvent::getProcessTime)
+            .thenComparing(e -> e.getType() + "#" + e.getId());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ChangeEvent> index = new ArrayList<>();
+
+    @Test
+    public void tiesAcrossBatchBoundaryAreEmittedOnce() throws Exception {
+        // 5条同一毫秒写入, 每批2条, 批次边界落在相同时间上
+        for (int i = 0; i < 5; i++) {
+            write("cars", "id" + i, 1000);
+        }
+        write("sales", "s1", 1001);
+
+        FileCheckpointStore store = new FileCheckpointStore(folder.getRoot().getPath());
+        ChangeFeed feed = new ChangeFeed("test", store, 0, this::fetch);
+
+        List<String> seen = new ArrayList<>();
+        feed.drain(events -> events.forEach(e -> seen.add(e.getId())));
+        assertEquals(6, seen.size());
+        assertEquals(6, seen.stream().distinct().count());
+
+        // 更新一条(写入时间变大), 只读到这一条
+        write("cars", "id2", 1002);
+        seen.clear();
+        feed.drain(events -> events.forEach(e -> seen.add(e.getId())));
+        assertEquals(Collections.singletonList("id2"), seen);
+
+        // 重新打开, 从保存的位置继续
+        ChangeFeed reopened = new ChangeFeed("test", store, 0, this::fetch);
+        assertEquals(1002, reopened.getCheckpoint().getProcessTime());
+        assertTrue(reopened.poll().isEmpty());
+    }
+
+    @Test
+    public void failedBatchIsReadAgain(){
+        write("cars", "a", 1000);
+        write("cars", "b", 1000);
+        write("cars", "c", 1001);
+
+        FileCheckpointStore store = new FileCheckpointStore(folder.getRoot().getPath());
+        ChangeFeed feed = new ChangeFeed("retry", store, 0, this::fetch);
+        try {
+            feed.drain(events -> {
+                throw new IllegalStateException("downstream unavailable");
+            });
+        } catch (IllegalStateException ignored){
+        }
+        assertNull(store.load("retry"));
+
+        List<String> seen = new ArrayList<>();
+        feed.drain(events -> events.forEach(e -> seen.add(e.getId())));
+        assertEquals(3, seen.size());
+    }
+
+    private void write(String type, String id, long processTime){
+        index.removeIf(e -> e.getType().equals(type) && e.getId().equals(id));
+        index.add(new ChangeEvent("car_shop", type, id, 1, processTime, Collections.emptyMap()));
+    }
+
+    /**
+     * 和 ElasticsearchUtils.searchChanges 一样的语义: processTime <= upTo, 按 [processTime, _uid] 严格在位置之后, 每批2条
+     */
+    private List<ChangeEvent> fetch(Checkpoint after, long upTo){
+        return index.stream()
+                .filter(e -> e.getProcessTime() <= upTo)
+                .filter(e -> after == null || e.getProcessTime() > after.getProcessTime()
+                        || e.getProcessTime() == after.getProcessTime() && (e.getType() + "#" + e.getId()).compareTo(after.getUid()) > 0)
+                .sorted(ORDER)
+                .limit(2)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,67 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.client.CircuitBreaker;
+import com.demo.elasticsearch.client.ResilientExecutor;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:30 2026/10/19
+ * @Description 熔断器状态转换和失败的分类, 不需要连接es集群
+ */
+public class CircuitBreakerTests {
+
+    @Test
+    public void opensAfterConsecutiveFailures(){
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60_000);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpenAdmitsSingleProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 10);
+        breaker.onFailure();
+        Thread.sleep(20);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(20);
+
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void onlyClusterFailuresCount(){
+        assertTrue(ResilientExecutor.isInfrastructureFailure(new NoNodeAvailableException("no node")));
+        assertTrue(ResilientExecutor.isInfrastructureFailure(new EsRejectedExecutionException("rejected")));
+        // 集群返回的业务错误
+        assertFalse(ResilientExecutor.isInfrastructureFailure(new IndexNotFoundException("car_shop")));
+        // 本地的bug, ExceptionsHelper.status 会当成500
+        assertFalse(ResilientExecutor.isInfrastructureFailure(new NullPointerException()));
+        assertFalse(ResilientExecutor.isInfrastructureFailure(new IllegalStateException("interrupted")));
+    }
+}
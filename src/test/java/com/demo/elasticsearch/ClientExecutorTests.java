@@ -0,0 +1,127 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.client.ClientExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @date Create in 11:39 2026/10/19
+ * @Description 三种执行方式的对比: 平台线程池阻塞调用 / 异步监听 / 虚拟线程阻塞调用
+ * 用定时器模拟固定延迟的es响应, 不需要连接es集群
+ */
+@Slf4j
+public class ClientExecutorTests {
+
+    private static final int CALLS = 2000;
+
+    private static final long LATENCY_MILLIS = 20;
+
+    private static final int PLATFORM_THREADS = 64;
+
+    /**
+     * 模拟网络: 请求发出后 LATENCY_MILLIS 毫秒完成
+     */
+    private final ScheduledExecutorService network = Executors.newScheduledThreadPool(2);
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @After
+    public void tearDown(){
+        network.shutdownNow();
+    }
+
+    @Test
+    public void executionModeBenchmark() throws Exception {
+        ExecutorService platform = ClientExecutor.platformExecutor("bench", PLATFORM_THREADS, 0);
+        try {
+            run("platform(" + PLATFORM_THREADS + ")", () -> blockingCalls(platform));
+        } finally {
+            platform.shutdownNow();
+        }
+
+        run("async listener", this::asyncCalls);
+
+        ExecutorService virtual = ClientExecutor.virtualThreadExecutor();
+        if (virtual == null){
+            log.info("virtual        : skipped, runtime {} has no virtual threads", System.getProperty("java.version"));
+            return;
+        }
+        try {
+            run("virtual", () -> blockingCalls(virtual));
+        } finally {
+            virtual.shutdownNow();
+        }
+    }
+
+    private void run(String name, Benchmark benchmark) throws Exception {
+        threads.resetPeakThreadCount();
+        int before = threads.getThreadCount();
+        long start = System.nanoTime();
+
+        assertEquals(CALLS, benchmark.run());
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("{} : {} calls in {} ms, peak threads +{}", String.format("%-15s", name), CALLS, elapsed, threads.getPeakThreadCount() - before);
+    }
+
+    /**
+     * 每个调用占用一个线程, 阻塞等待响应
+     */
+    private int blockingCalls(ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Integer>> calls = new ArrayList<>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return send().get();
+                } catch (InterruptedException | ExecutionException e){
+                    throw new IllegalStateException(e);
+                }
+            }, executor));
+        }
+        return sum(calls);
+    }
+
+    /**
+     * 只注册回调, 不占用等待线程
+     */
+    private int asyncCalls() throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Integer>> calls = new ArrayList<>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            calls.add(send());
+        }
+        return sum(calls);
+    }
+
+    private CompletableFuture<Integer> send(){
+        CompletableFuture<Integer> response = new CompletableFuture<>();
+        network.schedule(() -> response.complete(1), LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    private static int sum(List<CompletableFuture<Integer>> calls) throws InterruptedException, ExecutionException {
+        int total = 0;
+        for (CompletableFuture<Integer> call : calls) {
+            total += call.get();
+        }
+        return total;
+    }
+
+    private interface Benchmark {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,126 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.CompiledQuery;
+import com.demo.elasticsearch.util.ElasticsearchUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:15 2026/10/19
+ * @Description 预编译查询, 不需要连接es集群
+ */
+@Slf4j
+public class CompiledQueryTests {
+
+    private static final int WARM_UP = 20000;
+
+    private static final int ROUNDS = 100000;
+
+    /**
+     * 只用来构造 SearchRequestBuilder, 不会真正发送请求
+     */
+    private static final ElasticsearchClient CLIENT = Mockito.mock(ElasticsearchClient.class);
+
+    /**
+     * 预编译查询和原来拼装出来的请求体要一致
+     */
+    @Test
+    public void bindProducesSameRequest() throws IOException {
+        CompiledQuery compiledQuery = ElasticsearchUtils.compileQuery("movies,films", "movie", new String[]{"title"}, false,
+                "title", "title,year", "year", SortOrder.DESC, 10);
+
+        SearchRequest compiled = compiledQuery.bind(0, 0, "kill");
+        SearchRequest legacy = legacyRequest("kill");
+
+        assertEquals(legacy.source().toString(), compiled.source().toString());
+        assertEquals(2, compiled.indices().length);
+        assertEquals("movie", compiled.types()[0]);
+    }
+
+    /**
+     * 对比每次查询在客户端的内存分配: 原来的拼装方式 vs 预编译 + 绑定
+     */
+    @Test
+    public void allocationBenchmark() throws IOException {
+        CompiledQuery compiledQuery = ElasticsearchUtils.compileQuery("movies,films", "movie", new String[]{"title"}, false,
+                "title", "title,year", "year", SortOrder.DESC, 10);
+
+        for (int i = 0; i < WARM_UP; i++) {
+            serialize(legacyRequest("kill" + (i & 7)), true);
+            serialize(compiledQuery.bind(0, 0, "kill" + (i & 7)), false);
+        }
+
+        long legacyBytes = allocatedBytes();
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serialize(legacyRequest("kill" + (i & 7)), true);
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+        legacyBytes = allocatedBytes() - legacyBytes;
+
+        long compiledBytes = allocatedBytes();
+        long compiledStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serialize(compiledQuery.bind(0, 0, "kill" + (i & 7)), false);
+        }
+        long compiledNanos = System.nanoTime() - compiledStart;
+        compiledBytes = allocatedBytes() - compiledBytes;
+
+        log.info("legacy   : {} bytes/query, {} ns/query", legacyBytes / ROUNDS, legacyNanos / ROUNDS);
+        log.info("compiled : {} bytes/query, {} ns/query", compiledBytes / ROUNDS, compiledNanos / ROUNDS);
+
+        assertTrue(compiledBytes < legacyBytes);
+    }
+
+    /**
+     * 按照 ElasticsearchUtils.searchDocument 原来的方式拼装请求(包括INFO级别打印请求体)
+     */
+    private static SearchRequest legacyRequest(String value){
+        SearchRequestBuilder searchRequestBuilder = new SearchRequestBuilder(CLIENT, SearchAction.INSTANCE)
+                .setIndices("movies,films".split(","))
+                .setTypes("movie".split(","));
+
+        Map<String,String> matchMap = new HashMap<>(1);
+        matchMap.put("title", value);
+        BoolQueryBuilder boolQueryBuilder = ElasticsearchUtils.boolQuery(QueryBuilders.boolQuery(), 0, 0, matchMap, false);
+
+        searchRequestBuilder = ElasticsearchUtils.setHighlightField(searchRequestBuilder, "title");
+        searchRequestBuilder.setQuery(boolQueryBuilder);
+        searchRequestBuilder.setFetchSource("title,year".split(","), null);
+        searchRequestBuilder.addSort("year", SortOrder.DESC);
+        searchRequestBuilder.setSize(10);
+
+        return searchRequestBuilder.request();
+    }
+
+    private static void serialize(SearchRequest request, boolean logBody) throws IOException {
+        if (logBody){
+            // 原来的实现在INFO级别打印请求体, 每次都会序列化一遍
+            request.source().toString();
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+    }
+
+    private static long allocatedBytes(){
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,54 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.FieldProjection;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:24 2026/10/19
+ * @Description 返回字段投影, 不需要连接es集群
+ */
+public class FieldProjectionTests {
+
+    @Test
+    public void sourceIncludes(){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        FieldProjection.source("brand,price").apply(sourceBuilder);
+
+        assertTrue(sourceBuilder.fetchSource().fetchSource());
+        assertArrayEquals(new String[]{"brand", "price"}, sourceBuilder.fetchSource().includes());
+    }
+
+    @Test
+    public void emptySourceReturnsAll(){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        FieldProjection.source("").apply(sourceBuilder);
+
+        assertNull(sourceBuilder.fetchSource());
+    }
+
+    @Test
+    public void docValuesSkipSource(){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        FieldProjection.docValues("price", "produce_date").apply(sourceBuilder);
+
+        assertFalse(sourceBuilder.fetchSource().fetchSource());
+        assertEquals(2, sourceBuilder.docValueFields().size());
+    }
+
+    @Test
+    public void storedFieldsSkipSource(){
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        FieldProjection.storedFields("name").apply(sourceBuilder);
+
+        assertFalse(sourceBuilder.fetchSource().fetchSource());
+        assertEquals("name", sourceBuilder.storedFields().fieldNames().get(0));
+    }
+}
@@ -0,0 +1,80 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.HitStreamer;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 12:07 2026/10/19
+ * @Description 命中结果直接写到输出流, 不需要连接es集群
+ */
+public class HitStreamerTests {
+
+    private static final String CAR = "{\"brand\":\"宝马\", \"name\":\"宝马320\",\"price\":280000}";
+
+    @Test
+    public void sourceBytesAreCopiedVerbatim() throws IOException {
+        SearchResponse response = response(hit("1", CAR), hit("2", "{\"brand\":\"奔驰\"}"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, HitStreamer.writeHits(response, out));
+
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        // 原始字节(包括空格)原样输出, 没有重新序列化
+        assertTrue(json, json.contains("\"_source\":" + CAR));
+        assertTrue(json, json.contains("\"_index\":\"car_shop\""));
+
+        Map<String, Object> parsed = XContentHelper.convertToMap(new BytesArray(out.toByteArray()), false).v2();
+        assertEquals(5L, ((Number) parsed.get("total")).longValue());
+        assertEquals(2, ((List<?>) parsed.get("hits")).size());
+
+        // 输出流没有被关闭, 还可以继续写
+        out.write('\n');
+    }
+
+    @Test
+    public void visitorSeesResponseBuffers() throws IOException {
+        BytesReference source = new BytesArray(CAR);
+        InternalSearchHit hit = hit("1", CAR).sourceRef(source);
+
+        List<BytesReference> seen = new ArrayList<>();
+        HitStreamer.forEachSource(response(hit), (h, s) -> seen.add(s));
+        assertSame(source, seen.get(0));
+    }
+
+    private static InternalSearchHit hit(String id, String source){
+        InternalSearchHit hit = new InternalSearchHit(0, id, new Text("cars"), Collections.emptyMap());
+        hit.sourceRef(new BytesArray(source));
+        hit.score(1.0f);
+        hit.shard(new SearchShardTarget("node-1", new Index("car_shop", "_na_"), 0));
+        return hit;
+    }
+
+    private static SearchResponse response(InternalSearchHit... hits){
+        InternalSearchResponse internal = new InternalSearchResponse(new InternalSearchHits(hits, 5, 1.0f), null, null, null, false, null);
+        return new SearchResponse(internal, null, 1, 1, 3, ShardSearchFailure.EMPTY_ARRAY);
+    }
+}
@@ -0,0 +1,105 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.ContentHashIdGenerator;
+import com.demo.elasticsearch.util.FlakeIdGenerator;
+import com.demo.elasticsearch.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:59 2026/10/19
+ * @Description 客户端id生成, 不需要连接es集群
+ */
+@Slf4j
+public class IdGeneratorTests {
+
+    @Test
+    public void flakeIdsAreUniqueAndOrdered() throws InterruptedException {
+        FlakeIdGenerator generator = new FlakeIdGenerator();
+
+        byte[] previous = null;
+        for (int i = 0; i < 100000; i++) {
+            String id = generator.nextId();
+            assertEquals(20, id.length());
+            byte[] bytes = Base64.getUrlDecoder().decode(id);
+            if (previous != null){
+                assertTrue("ids must increase", compare(previous, bytes) < 0);
+            }
+            previous = bytes;
+        }
+
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(400000, ids.size());
+    }
+
+    @Test
+    public void contentHashIdsDependOnlyOnContent(){
+        IdGenerator generator = new ContentHashIdGenerator();
+
+        String first = generator.nextId(new BytesArray("{\"brand\":\"宝马\",\"price\":280000}"));
+        assertEquals(22, first.length());
+        assertEquals(first, generator.nextId(new BytesArray("{\"brand\":\"宝马\",\"price\":280000}")));
+        assertNotEquals(first, generator.nextId(new BytesArray("{\"brand\":\"宝马\",\"price\":290000}")));
+
+        assertNull(IdGenerator.of("server").nextId(null));
+    }
+
+    /**
+     * 生成速度对比, 写入速度的对比见 AppTests.idStrategyIndexingRate
+     */
+    @Test
+    public void generationRate(){
+        FlakeIdGenerator flake = new FlakeIdGenerator();
+        ContentHashIdGenerator hash = new ContentHashIdGenerator();
+        BytesArray source = new BytesArray("{\"brand\":\"宝马\",\"name\":\"宝马320\",\"price\":280000,\"produce_date\":\"2017-01-01\"}");
+
+        log.info("random uuid: {} ids/ms", rate(UUIDs::randomBase64UUID));
+        log.info("flake:       {} ids/ms", rate(flake::nextId));
+        log.info("hash:        {} ids/ms", rate(() -> hash.nextId(source)));
+    }
+
+    private static long rate(Supplier<String> generator){
+        int n = 200000;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            generator.get();
+        }
+        return n / Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static int compare(byte[] a, byte[] b){
+        for (int i = 0; i < a.length; i++) {
+            int c = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (c != 0){
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.model.Car;
+import com.demo.elasticsearch.model.Sale;
+import com.demo.elasticsearch.model.Shop;
+import com.demo.elasticsearch.schema.MappingBuilder;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ * @date Create in 11:22 2026/10/19
+ * @Description 注解生成mapping, 不需要连接es集群
+ */
+public class MappingBuilderTests {
+
+    @Test
+    public void carMapping(){
+        Map<String, Object> mapping = MappingBuilder.build(Car.class);
+
+        assertEquals(false, field(mapping, "_all").get("enabled"));
+        assertEquals("false", mapping.get("dynamic"));
+
+        Map<String, Object> properties = field(mapping, "properties");
+
+        // text + keyword子字段
+        Map<String, Object> name = field(properties, "name");
+        assertEquals("text", name.get("type"));
+        assertEquals("keyword", field(field(name, "fields"), "raw").get("type"));
+
+        // 数值字段默认有doc_values, 排序不需要fielddata
+        Map<String, Object> price = field(properties, "price");
+        assertEquals("long", price.get("type"));
+        assertNull(price.get("doc_values"));
+
+        // 字段名使用 @JsonProperty
+        assertEquals("yyyy-MM-dd", field(properties, "produce_date").get("format"));
+
+        // 只用来展示的字段
+        Map<String, Object> imageUrl = field(properties, "image_url");
+        assertEquals(false, imageUrl.get("index"));
+        assertEquals(false, imageUrl.get("doc_values"));
+        assertFalse(properties.containsKey("imageUrl"));
+
+        // 前缀搜索子字段和输入提示字段
+        Map<String, Object> autocomplete = field(field(name, "fields"), "autocomplete");
+        assertEquals(MappingBuilder.AUTOCOMPLETE_ANALYZER, autocomplete.get("analyzer"));
+        assertEquals(MappingBuilder.AUTOCOMPLETE_SEARCH_ANALYZER, autocomplete.get("search_analyzer"));
+        Map<String, Object> suggest = field(properties, "suggest");
+        assertEquals("completion", suggest.get("type"));
+        assertEquals(MappingBuilder.AUTOCOMPLETE_SEARCH_ANALYZER, suggest.get("analyzer"));
+    }
+
+    @Test
+    public void shopMapping(){
+        Map<String, Object> properties = field(MappingBuilder.build(Shop.class), "properties");
+
+        Map<String, Object> pin = field(properties, "pin");
+        assertEquals("geo_point", field(field(pin, "properties"), "location").get("type"));
+        assertEquals(false, field(properties, "address").get("index"));
+    }
+
+    @Test
+    public void saleRouting(){
+        Map<String, Object> mapping = MappingBuilder.build(Sale.class);
+
+        // 声明了路由字段, _routing必填
+        assertEquals(true, field(mapping, "_routing").get("required"));
+        assertEquals("keyword", field(field(mapping, "properties"), "shop_id").get("type"));
+        assertNull(MappingBuilder.build(Car.class).get("_routing"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> field(Map<String, Object> map, String name){
+        return (Map<String, Object>) map.get(name);
+    }
+}
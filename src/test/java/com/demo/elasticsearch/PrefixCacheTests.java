@@ -0,0 +1,69 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.PrefixCache;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 11:44 2026/10/19
+ * @Description 输入提示的前缀缓存, 不需要连接es集群
+ */
+public class PrefixCacheTests {
+
+    @Test
+    public void getAndInvalidate(){
+        PrefixCache cache = new PrefixCache(100);
+        cache.put("宝", Arrays.asList("宝马", "宝马320"), 1);
+        cache.put("宝马", Arrays.asList("宝马", "宝马320"), 1);
+        cache.put("奔", Collections.singletonList("奔驰"), 1);
+
+        assertEquals(Arrays.asList("宝马", "宝马320"), cache.get("宝").getValues());
+        assertNull(cache.get("宝马3"));
+
+        // 新车型上架, 它的所有前缀失效, 其他前缀不受影响
+        cache.invalidate("宝马x7");
+        assertNull(cache.get("宝"));
+        assertNull(cache.get("宝马"));
+        assertNotNull(cache.get("奔"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void dropsResultsLoadedBeforeInvalidate(){
+        PrefixCache cache = new PrefixCache(100);
+        long loadedAt = System.currentTimeMillis();
+
+        // 刷新查询发出之后数据变了, 查询回来的旧值不能再放进缓存
+        cache.invalidate("宝马x7");
+        cache.put("宝", Collections.singletonList("宝马"), loadedAt);
+        assertNull(cache.get("宝"));
+        assertEquals(0, cache.size());
+
+        cache.put("宝", Arrays.asList("宝马", "宝马x7"), System.currentTimeMillis() + 1);
+        assertEquals(Arrays.asList("宝马", "宝马x7"), cache.get("宝").getValues());
+    }
+
+    @Test
+    public void evictsColdPrefixes(){
+        PrefixCache cache = new PrefixCache(10);
+        cache.put("hot", Collections.singletonList("hot"), 1);
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("cold" + i, Collections.singletonList("cold" + i), 1);
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertNotNull(cache.get("hot"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.client.QueryProfiler;
+import com.demo.elasticsearch.model.QueryProfile;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.profile.ProfileResult;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.SearchProfileShardResults;
+import org.elasticsearch.search.profile.aggregation.AggregationProfileShardResult;
+import org.elasticsearch.search.profile.query.CollectorResult;
+import org.elasticsearch.search.profile.query.QueryProfileShardResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 12:04 2026/10/19
+ * @Description 查询profile的解析和聚合, 不需要连接es集群
+ */
+public class QueryProfilerTests {
+
+    private QueryProfiler profiler;
+
+    @Before
+    public void setUp(){
+        profiler = new QueryProfiler();
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "slowThresholdMillis", 100L);
+        ReflectionTestUtils.setField(profiler, "reprofileIntervalSeconds", 60L);
+        ReflectionTestUtils.setField(profiler, "maxShapes", 10);
+    }
+
+    @Test
+    public void shapeIgnoresValues(){
+        assertEquals(QueryProfiler.shape("car_shop", request("宝马", 300000).source().toString()),
+                QueryProfiler.shape("car_shop", request("奔驰", 500000).source().toString()));
+    }
+
+    @Test
+    public void shapeIgnoresArrayValues(){
+        String twoIds = QueryProfiler.shape("car_shop", new SearchSourceBuilder()
+                .query(QueryBuilders.termsQuery("shop_id", "1", "2")).toString());
+        String threeIds = QueryProfiler.shape("car_shop", new SearchSourceBuilder()
+                .query(QueryBuilders.termsQuery("shop_id", "3", "4", "5")).toString());
+        assertEquals(twoIds, threeIds);
+        assertFalse(twoIds, twoIds.contains("\"1\""));
+
+        // 对象数组(bool的must/filter)保留结构
+        assertTrue(QueryProfiler.shape("car_shop", request("宝马", 1).source().toString()).contains("\"must\":[{"));
+    }
+
+    @Test
+    public void parsesShardTimings(){
+        SearchRequest request = request("宝马", 300000);
+        request.source().profile(true);
+
+        ProfileResult term = new ProfileResult("TermQuery", "brand:宝马", Collections.emptyMap(), Collections.emptyList(), millis(3));
+        ProfileResult range = new ProfileResult("PointRangeQuery", "price:[0 TO 300000]", Collections.emptyMap(), Collections.emptyList(), millis(1));
+        ProfileResult bool = new ProfileResult("BooleanQuery", "+brand:宝马 +price:[0 TO 300000]", Collections.emptyMap(), Arrays.asList(term, range), millis(5));
+        QueryProfileShardResult shard = new QueryProfileShardResult(Collections.singletonList(bool), millis(1),
+                new CollectorResult("SimpleTopScoreDocCollector", "search_top_hits", millis(2), Collections.emptyList()));
+        SearchProfileShardResults profiles = new SearchProfileShardResults(Collections.singletonMap("[node][car_shop][0]",
+                new ProfileShardResult(Collections.singletonList(shard), new AggregationProfileShardResult(Collections.emptyList()))));
+
+        SearchResponse response = new SearchResponse(new InternalSearchResponse(InternalSearchHits.empty(), null, null, profiles, false, null),
+                null, 1, 1, 10, ShardSearchFailure.EMPTY_ARRAY);
+
+        assertFalse(profiler.record(request, response, TimeUnit.MILLISECONDS.toNanos(15)));
+
+        QueryProfile profile = QueryProfiler.lastProfile();
+        assertTrue(profile.isProfiled());
+        assertEquals(8, profile.getQueryMillis(), 0.001);
+        assertEquals(2, profile.getFetchAndReduceMillis(), 0.001);
+        assertEquals(5, profile.getTransportMillis(), 0.001);
+        assertEquals("TermQuery brand:宝马", profile.getShards().get(0).getSlowestQuery());
+        assertEquals(1, profiler.report(10).size());
+    }
+
+    @Test
+    public void slowQueryIsReprofiledOncePerInterval(){
+        SearchResponse response = new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 150, ShardSearchFailure.EMPTY_ARRAY);
+
+        assertFalse(profiler.record(request("宝马", 1), response, TimeUnit.MILLISECONDS.toNanos(50)));
+        assertTrue(profiler.record(request("宝马", 2), response, TimeUnit.MILLISECONDS.toNanos(200)));
+        assertFalse(profiler.record(request("奔驰", 3), response, TimeUnit.MILLISECONDS.toNanos(200)));
+        assertEquals(200, QueryProfiler.lastProfile().getRoundTripMillis(), 0.001);
+    }
+
+    private static SearchRequest request(String brand, long maxPrice){
+        return new SearchRequest(new String[]{"car_shop"}, new SearchSourceBuilder().query(QueryBuilders.boolQuery()
+                .must(QueryBuilders.matchQuery("brand", brand))
+                .filter(QueryBuilders.rangeQuery("price").lte(maxPrice))));
+    }
+
+    private static long millis(long millis){
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
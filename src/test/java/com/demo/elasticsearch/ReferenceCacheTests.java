@@ -0,0 +1,56 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.util.ReferenceCache;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author agent
+ * @date Create in 12:15 2026/10/19
+ * @Description 被引用document的缓存, 不需要连接es集群
+ */
+public class ReferenceCacheTests {
+
+    private static final Map<String, Object> BMW = Collections.singletonMap("brand", "宝马");
+
+    @Test
+    public void leastRecentlyUsedIsEvicted(){
+        ReferenceCache cache = new ReferenceCache(2, 0);
+        cache.put(key("1"), BMW, 0);
+        cache.put(key("2"), BMW, 0);
+
+        // 访问过的1留下, 淘汰2
+        cache.get(key("1"), 0);
+        cache.put(key("3"), BMW, 0);
+
+        assertEquals(BMW, cache.get(key("1"), 0));
+        assertNull(cache.get(key("2"), 0));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expiredAndInvalidatedEntriesAreMisses(){
+        ReferenceCache cache = new ReferenceCache(10, 1000);
+        cache.put(key("1"), BMW, 0);
+        cache.put(key("404"), ReferenceCache.MISSING, 0);
+
+        // 不存在的document也缓存
+        assertSame(ReferenceCache.MISSING, cache.get(key("404"), 999));
+        assertNull(cache.get(key("1"), 1000));
+
+        cache.put(key("1"), BMW, 1000);
+        cache.invalidate(key("1"));
+        assertNull(cache.get(key("1"), 1000));
+    }
+
+    private static String key(String id){
+        return ReferenceCache.key("car_shop", "cars", id);
+    }
+}
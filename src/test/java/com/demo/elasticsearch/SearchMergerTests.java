@@ -0,0 +1,107 @@
+package com.demo.elasticsearch;
+
+import com.demo.elasticsearch.model.FederatedSearchResult;
+import com.demo.elasticsearch.util.SearchMerger;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.valuecount.InternalValueCount;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @date Create in 12:11 2026/10/19
+ * @Description 多个集群结果的合并, 不需要连接es集群
+ */
+public class SearchMergerTests {
+
+    @Test
+    public void mergeByScore(){
+        Map<String, SearchResponse> responses = new LinkedHashMap<>();
+        responses.put("east", response(10, aggs(300000, 4), scored("e1", 3.0f), scored("e2", 1.0f)));
+        responses.put("west", response(7, aggs(280000, 6), scored("w1", 2.0f), scored("w2", 1.0f)));
+
+        FederatedSearchResult result = SearchMerger.merge(responses, Collections.emptyList(), 0, 3, Collections.emptyMap());
+
+        assertEquals(Arrays.asList("e1", "w1", "e2"), ids(result));
+        assertEquals("west", result.getHits().get(1).get("cluster"));
+        assertEquals(17, result.getTotal());
+        assertEquals(3.0f, result.getMaxScore(), 0);
+        assertTrue(result.isComplete());
+
+        // 聚合按类型合并: max取最大, count相加
+        assertEquals(300000, ((Max) result.getAggregations().get("max_price")).getValue(), 0);
+        assertEquals(10, ((ValueCount) result.getAggregations().get("count")).getValue());
+    }
+
+    @Test
+    public void mergeBySortValuesWithPaging(){
+        Map<String, SearchResponse> responses = new LinkedHashMap<>();
+        // 每个集群返回自己的前 from + size 条, 按价格倒序
+        responses.put("east", response(3, null, sorted("e1", 500L), sorted("e2", 300L), sorted("e3", null)));
+        responses.put("west", response(3, null, sorted("w1", 400L), sorted("w2", 200L), sorted("w3", 100L)));
+
+        Map<String, String> failures = Collections.singletonMap("south", "超时(5s)");
+        FederatedSearchResult result = SearchMerger.merge(responses, Collections.singletonList(SortOrder.DESC), 2, 3, failures);
+
+        // 全局顺序 e1 w1 e2 w2 w3 e3(缺失值排最后), 第2条开始取3条
+        assertEquals(Arrays.asList("e2", "w2", "w3"), ids(result));
+        assertEquals(6, result.getTotal());
+        assertEquals(null, result.getAggregations());
+        assertEquals(false, result.isComplete());
+    }
+
+    private static List<String> ids(FederatedSearchResult result){
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> hit : result.getHits()) {
+            ids.add((String) hit.get("id"));
+        }
+        return ids;
+    }
+
+    private static InternalSearchHit scored(String id, float score){
+        InternalSearchHit hit = new InternalSearchHit(0, id, new Text("cars"), Collections.emptyMap());
+        hit.score(score);
+        return hit;
+    }
+
+    private static InternalSearchHit sorted(String id, Long price){
+        InternalSearchHit hit = new InternalSearchHit(0, id, new Text("cars"), Collections.emptyMap());
+        hit.score(Float.NaN);
+        hit.sortValues(new Object[]{price}, new DocValueFormat[]{DocValueFormat.RAW});
+        return hit;
+    }
+
+    private static InternalAggregations aggs(double maxPrice, long count){
+        List<InternalAggregation> aggregations = new ArrayList<>();
+        aggregations.add(new InternalMax("max_price", maxPrice, DocValueFormat.RAW, Collections.emptyList(), null));
+        aggregations.add(new InternalValueCount("count", count, Collections.emptyList(), null));
+        return new InternalAggregations(aggregations);
+    }
+
+    private static SearchResponse response(long total, InternalAggregations aggregations, InternalSearchHit... hits){
+        float maxScore = hits.length == 0 ? Float.NaN : hits[0].getScore();
+        InternalSearchResponse internal = new InternalSearchResponse(new InternalSearchHits(hits, total, maxScore), aggregations, null, null, false, null);
+        return new SearchResponse(internal, null, 1, 1, 3, ShardSearchFailure.EMPTY_ARRAY);
+    }
+}